@@ -0,0 +1,15 @@
+package stemmer;
+
+/**
+ * Stemmer of words held in a char buffer of the caller, stemmed in place with no objects allocated per word, as a
+ * token stream needs.
+ * */
+public interface CharStemmer {
+
+    /**
+     * Stems the word {@code buffer[offset, offset+length)} in place and returns the length of the stem, which starts
+     * at {@code offset}. A stem that does not fit in the rest of the buffer is not written and the word is kept,
+     * returning {@code length}.
+     * */
+    int stem(char[] buffer, int offset, int length);
+}
@@ -0,0 +1,31 @@
+package stemmer;
+
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Factory of the {@link CharStemmer}s of the stemmers in use. The stemmer of a YASS dictionary is given by
+ * {@link stemmer.yass.YASS#charStemmer(java.util.Map)}.
+ * */
+public abstract class CharStemmers {
+
+    private static final CharStemmer PORTER = new CharStemmer() {
+        @Override
+        public int stem(char[] buffer, int offset, int length) {
+            return CompiledPorter.stem(buffer, offset, length);
+        }
+    };
+
+    /**
+     * The Russian Porter stemmer of {@link CompiledPorter}. It can be shared between threads.
+     * */
+    public static CharStemmer porter() {
+        return PORTER;
+    }
+
+    /**
+     * {@code stemmer} stemming the buffer in place. As {@code stemmer}, it cannot be shared between threads.
+     * */
+    public static CharStemmer snowball(SnowballStemmer stemmer) {
+        return new SnowballCharStemmer(stemmer);
+    }
+}
@@ -0,0 +1,169 @@
+package stemmer;
+
+import java.util.Locale;
+
+/**
+ * The Russian Porter stemmer of {@link Porter} with no regular expressions.
+ * <p>
+ * The word is lowercased in a char buffer of the thread and every step removes its suffix by moving the end of the
+ * word back: the longest suffix of a step is found walking a trie of the reversed suffixes from the last character,
+ * and the lookbehinds of the regular expressions are a check of the character before the suffix. The rules, and
+ * the stems, are the same as {@link Porter}.
+ * */
+public abstract class CompiledPorter {
+
+    private static final SuffixTrie PERFECTIVE_GROUND = new SuffixTrie(
+            new String[]{"ив", "ивши", "ившись", "ыв", "ывши", "ывшись"},
+            new String[]{"в", "вши", "вшись"});
+
+    private static final SuffixTrie ADJECTIVE = new SuffixTrie(
+            "ее", "ие", "ые", "ое", "ими", "ыми", "ей", "ий", "ый", "ой", "ем", "им", "ым", "ом", "его", "ого", "ему",
+            "ому", "их", "ых", "ую", "юю", "ая", "яя", "ою", "ею");
+
+    private static final SuffixTrie PARTICIPLE = new SuffixTrie(
+            new String[]{"ивш", "ывш", "ующ"},
+            new String[]{"ем", "нн", "вш", "ющ", "щ"});
+
+    private static final SuffixTrie VERB = new SuffixTrie(
+            new String[]{"ила", "ыла", "ена", "ейте", "уйте", "ите", "или", "ыли", "ей", "уй", "ил", "ыл", "им", "ым",
+                    "ен", "ило", "ыло", "ено", "ят", "ует", "уют", "ит", "ыт", "ены", "ить", "ыть", "ишь", "ую", "ю"},
+            new String[]{"ла", "на", "ете", "йте", "ли", "й", "л", "ем", "н", "ло", "но", "ет", "ют", "ны", "ть", "ешь",
+                    "нно"});
+
+    private static final SuffixTrie NOUN = new SuffixTrie(
+            "а", "ев", "ов", "ие", "ье", "е", "иями", "ями", "ами", "еи", "ии", "и", "ией", "ей", "ой", "ий", "й", "иям",
+            "ям", "ием", "ем", "ам", "ом", "о", "у", "ах", "иях", "ях", "ы", "ь", "ию", "ью", "ю", "ия", "ья", "я");
+
+    private static final SuffixTrie SUPERLATIVE = new SuffixTrie("ейше", "ейш");
+
+    private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[64];
+        }
+    };
+
+    public static String stem(String word) {
+        int length = word.length();
+        if (!isPlain(word)) {
+            // lowercasing that depends on the locale or on the context, or line terminators in the word
+            return Porter.stem(word);
+        }
+        char[] buffer = BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, 2 * buffer.length)];
+            BUFFER.set(buffer);
+        }
+        word.getChars(0, length, buffer, 0);
+        return new String(buffer, 0, stem(buffer, 0, length));
+    }
+
+    /**
+     * Stems the word {@code buffer[offset, offset+length)} in place, as {@link CharStemmer}, and returns the length
+     * of the stem. The word is lowercased a character at a time, as by the lowercase filter of a token stream; for
+     * Russian words it is the stem of {@link #stem(String)}.
+     * */
+    public static int stem(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            char c = Character.toLowerCase(buffer[i]);
+            buffer[i] = c == 'ё' ? 'е' : c;
+        }
+        return stemLowerCase(buffer, offset, length);
+    }
+
+    /**
+     * Whether {@code String.toLowerCase} lowercases {@code word} a character at a time, and none of the characters
+     * ends a line for the regular expressions: Latin and Cyrillic words out of the Turkish, Azerbaijani and
+     * Lithuanian locales.
+     * */
+    private static boolean isPlain(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c >= 0x80 ? c < 0x400 || c >= 0x500 : c == '\n' || c == '\r') {
+                return false;
+            }
+        }
+        String language = Locale.getDefault().getLanguage();
+        return !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+    }
+
+    /**
+     * Stems the lowercase word {@code buffer[offset, offset+length)} in place and returns the length of the stem.
+     * */
+    private static int stemLowerCase(char[] buffer, int offset, int length) {
+        int end = offset + length;
+        // RV is the part of the word after the first vowel
+        int rv = offset;
+        while (rv < end && !isVowel(buffer[rv])) {
+            rv++;
+        }
+        if (rv == end) {
+            return length;
+        }
+        rv++;
+
+        int suffix = PERFECTIVE_GROUND.match(buffer, rv, end);
+        if (suffix > 0) {
+            end -= suffix;
+        } else {
+            if (end - rv >= 2 && buffer[end-2] == 'с' && (buffer[end-1] == 'я' || buffer[end-1] == 'ь')) {
+                end -= 2;
+            }
+            suffix = ADJECTIVE.match(buffer, rv, end);
+            if (suffix > 0) {
+                end -= suffix;
+                end -= PARTICIPLE.match(buffer, rv, end);
+            } else {
+                suffix = VERB.match(buffer, rv, end);
+                end -= suffix > 0 ? suffix : NOUN.match(buffer, rv, end);
+            }
+        }
+
+        if (end > rv && buffer[end-1] == 'и') {
+            end--;
+        }
+
+        // derivational: ост or ость after a consonant followed by a vowel
+        suffix = endsWith(buffer, rv, end, "ость") ? 4 : endsWith(buffer, rv, end, "ост") ? 3 : 0;
+        if (suffix > 0) {
+            for (int i = rv; i + 1 < end - suffix; i++) {
+                if (!isVowel(buffer[i]) && isVowel(buffer[i+1])) {
+                    end -= suffix;
+                    break;
+                }
+            }
+        }
+
+        if (end > rv && buffer[end-1] == 'ь') {
+            end--;
+        } else {
+            end -= SUPERLATIVE.match(buffer, rv, end);
+            if (endsWith(buffer, rv, end, "нн")) {
+                end--;
+            }
+        }
+        return end - offset;
+    }
+
+    private static boolean endsWith(char[] buffer, int start, int end, String suffix) {
+        int length = suffix.length();
+        if (end - start < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[end - length + i] != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVowel(char c) {
+        switch (c) {
+            case 'а': case 'е': case 'и': case 'о': case 'у': case 'ы': case 'э': case 'ю': case 'я':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
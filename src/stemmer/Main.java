@@ -1,10 +1,11 @@
 package stemmer;
 
-import stemmer.clustering.ClusterSet;
 import stemmer.clustering.HierarchicalClustering;
-import stemmer.clustering.HistoryClusterBuilder;
-import stemmer.clustering.MergeHistoryRecord;
+import stemmer.clustering.SnapshotListener;
+import stemmer.clustering.WindowedClustering;
 import stemmer.yass.Experiment;
+import stemmer.yass.Lexicon;
+import stemmer.yass.StemDictionary;
 import stemmer.yass.YASS;
 
 import java.io.*;
@@ -54,7 +55,8 @@ public class Main {
     private static void saveStemmedDict(String expName, Map<String, String> dictionary, String distanceName, float threshold) {
         Object[] keys = dictionary.keySet().toArray();
         Arrays.sort(keys);
-        String filePath = D_OUTPUTS + "/"+expName+"/"+DN_STEMMED_DICT+"/sd_"+distanceName+"_"+threshold+".dict";
+        String fileName = D_OUTPUTS + "/"+expName+"/"+DN_STEMMED_DICT+"/sd_"+distanceName+"_"+threshold;
+        String filePath = fileName+".dict";
 
         try (Writer writer = new BufferedWriter(new OutputStreamWriter(
                 new FileOutputStream(filePath), "utf-8"))) {
@@ -70,11 +72,19 @@ public class Main {
         } catch (Exception e){
             System.err.println(e.getMessage());
         }
+
+        // the same dictionary in the binary format, that is mapped by StemDictionary.open with no parsing
+        try {
+            StemDictionary.of(dictionary).write(Paths.get(fileName+".sdict"));
+        } catch (Exception e){
+            System.err.println(e.getMessage());
+        }
     }
 
     public static void main(String[] args) throws IOException {
 
 
+        checkCompiledPorter();
         runPorter();
 
         runAndSaveYASS(args);
@@ -127,6 +137,37 @@ public class Main {
         System.out.println("Discarded " + discardedNumbers + "numbers " + discardedStopwords +" stopwords");
         return lexicon;
     }
+    /**
+     * Compares {@link CompiledPorter} with {@link Porter}, whose rules it copies, on both columns of the data set
+     * and on their upper-case forms, and prints the words they stem differently.
+     * */
+    private static void checkCompiledPorter() throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream("lexicon/russian/DataSet.txt"), "UTF8"));
+        String strLine;
+        int count = 0;
+        int differences = 0;
+        while ((strLine = br.readLine()) != null) {
+            for (String token : strLine.split(" ")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                for (String word : new String[]{token, token.toUpperCase(Locale.ROOT)}) {
+                    count++;
+                    String expected = Porter.stem(word);
+                    String actual = CompiledPorter.stem(word);
+                    if (!expected.equals(actual)) {
+                        differences++;
+                        System.err.println("CompiledPorter differs from Porter on " + word + ": " + actual
+                                + " instead of " + expected);
+                    }
+                }
+            }
+        }
+        br.close();
+        System.out.println("CompiledPorter checked on " + count + " words: " + differences + " differences from Porter");
+    }
+
     private static void runPorter() throws IOException {
         SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.RUSSIAN);
 
@@ -152,13 +193,13 @@ public class Main {
             String[] delims = strLine.split(" ");
             String first = delims[0];
             System.out.println(String.format("First: %s, StemSnowball: %s, StemPorter:%s, Second: %s",
-                    first, stemmer.stem(first), Porter.stem(first), delims[1]));
+                    first, stemmer.stem(first), CompiledPorter.stem(first), delims[1]));
             if (stemmer.stem(first).equals(delims[1])) {
                 countForTrueSnowball++;
             } else {
                 countForFalseSnowball++;
             }
-            if (Porter.stem(first).equals(delims[1])) {
+            if (CompiledPorter.stem(first).equals(delims[1])) {
                 countForTruePorter++;
             } else {
                 countForFalsePorter++;
@@ -213,17 +254,36 @@ public class Main {
 
         System.out.println("Perform the clustering algorithm with the measurement" + exp.getDistanceMeasure().getName());
 
-        List<MergeHistoryRecord> mergeHistory = HierarchicalClustering.calculateClusters(exp.getDistanceMeasure(), lexicon);
+        final String experimentName = exp.getName();
+        final String distanceName = exp.getDistanceMeasure().getName();
+        // the words are packed in one char array, the String objects of the loaded lexicon can be collected
+        final Lexicon words = new Lexicon(lexicon);
+        lexicon = null;
+        // only the stems are needed: the clusters are received at every threshold and the history is never kept
+        SnapshotListener saveStems = new SnapshotListener() {
+            @Override
+            public void onSnapshot(float threshold, int[] labels) {
+                Map<String, String> stemmedDict = YASS.stemFromLabels(words, labels);
+                saveStemmedDict(experimentName, stemmedDict, distanceName, threshold);
+            }
+        };
+        if (exp.getWindow() > 0) {
+            if (exp.getWindowSample() > 0) {
+                WindowedClustering.reportAgreement(exp.getDistanceMeasure(), words, exp.getWindow(),
+                        exp.getWindowSample(), exp.getClusteringEngine(), exp.getDistanceMatrixStorage(),
+                        exp.getLinkage(), exp.getThresholds());
+            }
+            WindowedClustering.calculateSnapshots(exp.getDistanceMeasure(), words, exp.getWindow(),
+                    exp.getClusteringEngine(), exp.getDistanceMatrixStorage(), exp.getLinkage(), exp.getThresholds(),
+                    saveStems);
+        } else {
+            HierarchicalClustering.calculateSnapshots(exp.getDistanceMeasure(), words, exp.isLexiconPartitioned(),
+                    exp.getClusteringEngine(), exp.getDistanceMatrixStorage(), exp.getLinkage(), exp.getThresholds(),
+                    saveStems);
+        }
 
         System.out.println("Completed clustering! Time passed: " + (System.currentTimeMillis() - startTime)/1000);
 
-        List<ClusterSet> snapshots = HistoryClusterBuilder.buildSetsFromHistory(lexicon, mergeHistory, exp.getThresholds());
-
-        for (ClusterSet cs : snapshots) {
-            Map<String, String> stemmedDict = YASS.stemFromClusterSet(cs);
-            saveStemmedDict(exp.getName(), stemmedDict, exp.getDistanceMeasure().getName(), cs.getThreshold());
-        }
-
         System.out.println("Completion completed. Total duration: " + (System.currentTimeMillis() - startTime)/1000 + " s");
     }
 
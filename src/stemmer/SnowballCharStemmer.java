@@ -0,0 +1,61 @@
+package stemmer;
+
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * {@link CharStemmer} of a Snowball stemmer of OpenNLP. The word is passed to it through a view on the buffer that
+ * is reused for every word, and the stem is copied back into the buffer. The strings made inside OpenNLP cannot be
+ * avoided, its program is not accessible.
+ * */
+class SnowballCharStemmer implements CharStemmer, CharSequence {
+
+    private SnowballStemmer stemmer;
+    private char[] buffer;
+    private int offset;
+    private int length;
+
+    SnowballCharStemmer(SnowballStemmer stemmer) {
+        this.stemmer = stemmer;
+    }
+
+    @Override
+    public int stem(char[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        CharSequence stem = stemmer.stem(this);
+        this.buffer = null;
+        int stemLength = stem.length();
+        if (stemLength > buffer.length - offset) {
+            return length;
+        }
+        if (stem instanceof String) {
+            ((String) stem).getChars(0, stemLength, buffer, offset);
+        } else {
+            for (int i = 0; i < stemLength; i++) {
+                buffer[offset + i] = stem.charAt(i);
+            }
+        }
+        return stemLength;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return buffer[offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, offset, length);
+    }
+}
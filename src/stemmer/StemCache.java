@@ -0,0 +1,261 @@
+package stemmer;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded cache of the stems of a stemmer, that can be shared between the threads of a token stream.
+ * <p>
+ * The frequencies of the words follow Zipf's law, so a few thousands of stems answer most of the calls. The words
+ * are spread by hash over independent segments, each one with its own lock, so the threads do not wait on a global
+ * lock. Every segment evicts with CLOCK: a hit marks the entry as referenced, and the hand looking for an entry to
+ * evict clears the marks it passes and evicts the first entry not marked since its last pass.
+ * <p>
+ * The capacity is in bytes, estimated from the length of the words and of the stems, with a fixed overhead for the
+ * objects of every entry. The stemmer is called outside of the locks, so it must be safe between threads.
+ * */
+public class StemCache implements Stemmer {
+
+    /** Estimated bytes of an entry besides the chars: two strings with their arrays, the map node and the slots. */
+    static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * Cache of {@code stemmer}, which must be safe between threads, of at most about {@code capacityBytes} bytes.
+     * */
+    public static StemCache of(Stemmer stemmer, long capacityBytes) {
+        return new StemCache(stemmer, capacityBytes);
+    }
+
+    /**
+     * Cache of {@link CompiledPorter}.
+     * */
+    public static StemCache porter(long capacityBytes) {
+        return of(new Stemmer() {
+            @Override
+            public CharSequence stem(CharSequence word) {
+                return CompiledPorter.stem(word.toString());
+            }
+        }, capacityBytes);
+    }
+
+    /**
+     * Cache of the Snowball stemmer of OpenNLP for {@code algorithm}, with a stemmer for every thread, since the
+     * Snowball stemmers keep the word they are working on.
+     * */
+    public static StemCache snowball(final SnowballStemmer.ALGORITHM algorithm, long capacityBytes) {
+        final ThreadLocal<SnowballStemmer> stemmers = new ThreadLocal<SnowballStemmer>() {
+            @Override
+            protected SnowballStemmer initialValue() {
+                return new SnowballStemmer(algorithm);
+            }
+        };
+        return of(new Stemmer() {
+            @Override
+            public CharSequence stem(CharSequence word) {
+                return stemmers.get().stem(word);
+            }
+        }, capacityBytes);
+    }
+
+    /**
+     * Cache of a dictionary of YASS, as made by {@link stemmer.yass.YASS#stemFromLabels(java.util.List, int[])}.
+     * The words out of the dictionary are their own stem.
+     * */
+    public static StemCache dictionary(final Map<String, String> stemmedDict, long capacityBytes) {
+        return of(new Stemmer() {
+            @Override
+            public CharSequence stem(CharSequence word) {
+                String stem = stemmedDict.get(word.toString());
+                return stem != null ? stem : word;
+            }
+        }, capacityBytes);
+    }
+
+    private Stemmer stemmer;
+    private Segment[] segments;
+
+    private StemCache(Stemmer stemmer, long capacityBytes) {
+        this.stemmer = stemmer;
+        int cores = Runtime.getRuntime().availableProcessors();
+        // a few segments per core, but every segment keeps room for some entries
+        int count = Integer.highestOneBit(Math.max(1, 4 * cores));
+        while (count > 1 && capacityBytes / count < 64 * ENTRY_OVERHEAD) {
+            count /= 2;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacityBytes / count);
+        }
+    }
+
+    @Override
+    public CharSequence stem(CharSequence word) {
+        String key = word.toString();
+        int h = key.hashCode();
+        Segment segment = segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+        String stem = segment.get(key);
+        if (stem == null) {
+            stem = stemmer.stem(key).toString();
+            segment.put(key, stem);
+        }
+        return stem;
+    }
+
+    public long hits() {
+        long hits = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                hits += s.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long misses() {
+        long misses = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                misses += s.misses;
+            }
+        }
+        return misses;
+    }
+
+    public long evictions() {
+        long evictions = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                evictions += s.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    /**
+     * Estimated bytes of the entries in the cache.
+     * */
+    public long bytes() {
+        long bytes = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                bytes += s.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        long hits = hits();
+        long misses = misses();
+        return String.format(Locale.ROOT, "Stem cache: %d hits, %d misses (hit rate %.4f), %d evictions, %d bytes",
+                hits, misses, hits + misses == 0 ? 0.0 : (double) hits / (hits + misses), evictions(), bytes());
+    }
+
+    private static int cost(String word, String stem) {
+        return ENTRY_OVERHEAD + 2 * (word.length() + (stem.equals(word) ? 0 : stem.length()));
+    }
+
+    /**
+     * A part of the cache under its own lock. The entries are in slots walked by the hand of the clock, and the
+     * slots of the evicted entries are reused.
+     * */
+    private static class Segment {
+        private long capacity;
+        private long bytes;
+        private Map<String, Integer> slots = new HashMap<>();
+        private String[] words = new String[16];
+        private String[] stems = new String[16];
+        private boolean[] referenced = new boolean[16];
+        // slots in use or freed, and the freed ones, as a stack
+        private int used;
+        private int[] free = new int[16];
+        private int freeCount;
+        private int hand;
+
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Segment(long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized String get(String word) {
+            Integer slot = slots.get(word);
+            if (slot == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            referenced[slot] = true;
+            return stems[slot];
+        }
+
+        synchronized void put(String word, String stem) {
+            if (slots.containsKey(word)) {
+                // stemmed at the same time by another thread
+                return;
+            }
+            int cost = cost(word, stem);
+            if (cost > capacity) {
+                return;
+            }
+            while (bytes + cost > capacity) {
+                evict();
+            }
+            int slot;
+            if (freeCount > 0) {
+                slot = free[--freeCount];
+            } else {
+                if (used == words.length) {
+                    grow();
+                }
+                slot = used++;
+            }
+            words[slot] = word;
+            stems[slot] = stem.equals(word) ? word : stem;
+            referenced[slot] = false;
+            slots.put(word, slot);
+            bytes += cost;
+        }
+
+        private void evict() {
+            while (true) {
+                if (hand >= used) {
+                    hand = 0;
+                }
+                int slot = hand++;
+                if (words[slot] == null) {
+                    continue;
+                }
+                if (referenced[slot]) {
+                    referenced[slot] = false;
+                    continue;
+                }
+                slots.remove(words[slot]);
+                bytes -= cost(words[slot], stems[slot]);
+                words[slot] = null;
+                stems[slot] = null;
+                if (freeCount == free.length) {
+                    free = Arrays.copyOf(free, 2 * free.length);
+                }
+                free[freeCount++] = slot;
+                evictions++;
+                return;
+            }
+        }
+
+        private void grow() {
+            int length = 2 * words.length;
+            words = Arrays.copyOf(words, length);
+            stems = Arrays.copyOf(stems, length);
+            referenced = Arrays.copyOf(referenced, length);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package stemmer;
+
+import java.util.Arrays;
+
+/**
+ * Trie of the reversed suffixes of a step of the Porter stemmer, walked from the end of the word.
+ * <p>
+ * The suffixes are made of the lowercase Russian letters а-я, so every node has a table of 32 children. A suffix is
+ * either removed always, or only when it follows а or я, as the lookbehinds of the regular expressions in
+ * {@link Porter}.
+ * */
+class SuffixTrie {
+
+    private static final char FIRST = 'а';
+    private static final int LETTERS = 32;
+
+    private static final byte ALWAYS = 1;
+    private static final byte AFTER_A = 2;
+
+    private int[] children;
+    private byte[] kinds;
+    private int size;
+
+    /**
+     * Trie of the suffixes {@code always}, and of the suffixes {@code afterA} that are removed only after а or я.
+     * */
+    SuffixTrie(String[] always, String[] afterA) {
+        children = new int[LETTERS];
+        kinds = new byte[1];
+        size = 1;
+        for (String s : afterA) {
+            add(s, AFTER_A);
+        }
+        for (String s : always) {
+            add(s, ALWAYS);
+        }
+    }
+
+    SuffixTrie(String... always) {
+        this(always, new String[0]);
+    }
+
+    private void add(String suffix, byte kind) {
+        int node = 0;
+        for (int i = suffix.length() - 1; i >= 0; i--) {
+            int c = suffix.charAt(i) - FIRST;
+            if (c < 0 || c >= LETTERS) {
+                throw new IllegalArgumentException("Suffix out of а-я: " + suffix);
+            }
+            if (children[node * LETTERS + c] == 0) {
+                if (size == kinds.length) {
+                    children = Arrays.copyOf(children, 2 * size * LETTERS);
+                    kinds = Arrays.copyOf(kinds, 2 * size);
+                }
+                children[node * LETTERS + c] = size++;
+            }
+            node = children[node * LETTERS + c];
+        }
+        kinds[node] = kind;
+    }
+
+    /**
+     * Length of the longest suffix of the trie that ends {@code buffer[start, end)}, 0 if none. As in the regular
+     * expressions, the а or я before a conditional suffix must be in the range too.
+     * */
+    int match(char[] buffer, int start, int end) {
+        int longest = 0;
+        int node = 0;
+        for (int i = end - 1; i >= start; i--) {
+            int c = buffer[i] - FIRST;
+            if (c < 0 || c >= LETTERS) {
+                break;
+            }
+            node = children[node * LETTERS + c];
+            if (node == 0) {
+                break;
+            }
+            byte kind = kinds[node];
+            if (kind == ALWAYS || (kind == AFTER_A && i > start && (buffer[i-1] == 'а' || buffer[i-1] == 'я'))) {
+                longest = end - i;
+            }
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,13 @@
+package stemmer.clustering;
+
+/**
+ * Array of floats indexed by a long, which holds the linearized distance matrix.
+ * */
+interface BigFloatArray {
+
+    float get(long index);
+
+    void set(long index, float value);
+
+    long getSize();
+}
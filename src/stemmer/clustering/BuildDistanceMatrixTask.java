@@ -1,7 +1,5 @@
 package stemmer.clustering;
 
-import stemmer.yass.DistanceMeasure;
-
 import java.util.concurrent.RecursiveAction;
 
 
@@ -10,40 +8,61 @@ import java.util.concurrent.RecursiveAction;
  * */
 public class BuildDistanceMatrixTask extends RecursiveAction {
 
-    private static long SEQUENTIAL_THRESHOLD = 100000;
-
-    static void buildDistanceMatrix(ClusterManager manager, DistanceMeasure d){
-
+    static void buildDistanceMatrix(ClusterManager manager, WordDistance d){
+        int rows = manager.slots();
+        // the clusters of a new manager are the single words, in their order: the rows are filled in one call
+        boolean words = true;
+        for (int i = 0; i < rows && words; i++) {
+            words = manager.getCluster(i).size() == 1 && manager.getCluster(i).getFirstWord() == i;
+        }
         int cores = Runtime.getRuntime().availableProcessors();
-        SEQUENTIAL_THRESHOLD = (long)Math.ceil((double) manager.dist.getSize() / (4.0*cores));
-        ClusterManager.commonPool.invoke(new BuildDistanceMatrixTask(manager,d, 0, manager.dist.getSize()));
+        long sequentialThreshold = (long)Math.ceil((double) manager.dist.getSize() / (4.0*cores));
+        ClusterManager.commonPool.invoke(new BuildDistanceMatrixTask(manager, d, words, 0, rows, sequentialThreshold));
     }
 
     private ClusterManager manager;
-    private long start;
-    private long end;
-    private DistanceMeasure d;
+    private int start;
+    private int end;
+    private WordDistance d;
+    private boolean words;
+    // Pairs per leaf. Per invocation, so that matrices built concurrently do not share it
+    private long sequentialThreshold;
 
-    private BuildDistanceMatrixTask(ClusterManager manager, DistanceMeasure d, long start, long end) {
+    private BuildDistanceMatrixTask(ClusterManager manager, WordDistance d, boolean words, int start, int end,
+                                    long sequentialThreshold) {
         this.manager = manager;
         this.start = start;
         this.end = end;
         this.d = d;
+        this.words = words;
+        this.sequentialThreshold = sequentialThreshold;
     }
 
     @Override
     protected void compute() {
-        if(end - start <= SEQUENTIAL_THRESHOLD){
-            // do sequential work
-            for (long k = start; k < end; k++){
-                int i = manager._i(k);
-                int j = manager._j(k);
-                manager.dist.set(k, manager.getCluster(i).distance(manager.getCluster(j), d));
+        if(end - start <= 1 || manager.pairsBefore(end) - manager.pairsBefore(start) <= sequentialThreshold){
+            // do sequential work, one row at a time
+            int n = manager.slots();
+            float[] row = new float[n];
+            for (int i = start; i < end && i < n-1; i++) {
+                if (words) {
+                    d.row(i, i+1, n, row);
+                } else {
+                    for (int j = i+1; j < n; j++) {
+                        row[j-i-1] = manager.getCluster(i).distance(manager.getCluster(j), d);
+                    }
+                }
+                // the pairs (i, j) of a row are consecutive, in descending order of j
+                long first = manager._k(i, n-1);
+                for (int j = i+1; j < n; j++) {
+                    manager.dist.set(first + (n-1-j), row[j-i-1]);
+                }
             }
         } else {
-            long mid = start + (end - start) / 2;
-            BuildDistanceMatrixTask left  = new BuildDistanceMatrixTask(manager, d, start, mid);
-            BuildDistanceMatrixTask right = new BuildDistanceMatrixTask(manager, d, mid, end);
+            // the ranges hold about the same number of pairs
+            int mid = manager.splitRows(start, end);
+            BuildDistanceMatrixTask left  = new BuildDistanceMatrixTask(manager, d, words, start, mid, sequentialThreshold);
+            BuildDistanceMatrixTask right = new BuildDistanceMatrixTask(manager, d, words, mid, end, sequentialThreshold);
             left.fork();
             right.compute();
             left.join();
@@ -0,0 +1,93 @@
+package stemmer.clustering;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Class that implements the parallel calculation of the rows of a sparse distance matrix according to a
+ * divide-et-impera strategy. Only the pairs at a distance not above the limit are kept.
+ * */
+public class BuildSparseMatrixTask extends RecursiveAction {
+
+    /**
+     * Computes, for every row i, the clusters j > i within {@code maxDistance} and their distance.
+     * */
+    static void buildRows(Cluster[] clusters, WordDistance d, float maxDistance, int[][] neighbours, float[][] distances) {
+        int rows = clusters.length;
+        // single words in their order: the rows are filled in one call
+        boolean words = true;
+        for (int i = 0; i < rows && words; i++) {
+            words = clusters[i].size() == 1 && clusters[i].getFirstWord() == i;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        long sequentialThreshold = (long)Math.ceil((double) rows / (16.0*cores));
+        ClusterManager.commonPool.invoke(new BuildSparseMatrixTask(clusters, d, words, maxDistance, neighbours, distances,
+                0, rows, sequentialThreshold));
+    }
+
+    private Cluster[] clusters;
+    private WordDistance d;
+    private boolean words;
+    private float maxDistance;
+    private int[][] neighbours;
+    private float[][] distances;
+    private int start;
+    private int end;
+    private long sequentialThreshold;
+
+    private BuildSparseMatrixTask(Cluster[] clusters, WordDistance d, boolean words, float maxDistance, int[][] neighbours,
+                                  float[][] distances, int start, int end, long sequentialThreshold) {
+        this.clusters = clusters;
+        this.d = d;
+        this.words = words;
+        this.maxDistance = maxDistance;
+        this.neighbours = neighbours;
+        this.distances = distances;
+        this.start = start;
+        this.end = end;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    @Override
+    protected void compute() {
+        if(end - start <= sequentialThreshold){
+            // do sequential work
+            int n = clusters.length;
+            int[] js = new int[16];
+            float[] ds = new float[16];
+            float[] row = new float[n];
+            for (int i = start; i < end; i++) {
+                if (words) {
+                    d.row(i, i+1, n, row);
+                } else {
+                    for (int j = i+1; j < n; j++) {
+                        row[j-i-1] = clusters[i].distance(clusters[j], d);
+                    }
+                }
+                int cnt = 0;
+                for (int j = i+1; j < n; j++) {
+                    float value = row[j-i-1];
+                    if (value <= maxDistance) {
+                        if (cnt == js.length) {
+                            js = Arrays.copyOf(js, cnt * 2);
+                            ds = Arrays.copyOf(ds, cnt * 2);
+                        }
+                        js[cnt] = j;
+                        ds[cnt] = value;
+                        cnt++;
+                    }
+                }
+                neighbours[i] = Arrays.copyOf(js, cnt);
+                distances[i] = Arrays.copyOf(ds, cnt);
+            }
+        } else {
+            int mid = start + (end - start) / 2;
+            BuildSparseMatrixTask left  = new BuildSparseMatrixTask(clusters, d, words, maxDistance, neighbours, distances, start, mid, sequentialThreshold);
+            BuildSparseMatrixTask right = new BuildSparseMatrixTask(clusters, d, words, maxDistance, neighbours, distances, mid, end, sequentialThreshold);
+            left.fork();
+            right.compute();
+            left.join();
+        }
+    }
+}
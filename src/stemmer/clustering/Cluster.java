@@ -1,69 +1,74 @@
 package stemmer.clustering;
 
 
-import stemmer.yass.DistanceMeasure;
+import stemmer.yass.Lexicon;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Iterator;
 import java.util.List;
-
-
+import java.util.NoSuchElementException;
+
+
+/**
+ * A cluster of words of the lexicon.
+ * <p>
+ * The words are a linked list of word ids in an int array shared by all the clusters of the same clustering,
+ * where {@code next[w]} follows the word {@code w}. A merge links the last word of the first cluster to the first
+ * word of the second one, so it does not copy the words. A cluster reads only its own {@code size} words from
+ * its head, so it stays valid after being merged, as long as it is merged only once.
+ * The central word is kept as the length of the prefix of the first word shared by all the words.
+ * */
 public class Cluster {
 
     static Cluster merge(int id, Cluster c1, Cluster c2) {
-        List<String> newWords = (ArrayList<String>)((ArrayList<String>)c1.words).clone();
-        newWords.addAll(c2.words);
-        return new Cluster(id, newWords);
+        c1.next[c1.tail] = c2.head;
+        // the prefix of the union is the common prefix of the prefixes of the two clusters
+        int prefixLength = Math.min(Math.min(c1.prefixLength, c2.prefixLength), c1.lexicon.firstMismatch(c1.head, c2.head));
+        return new Cluster(id, c1.lexicon, c1.next, c1.head, c2.tail, c1.size + c2.size, prefixLength);
     }
 
     private int id;
-    private List<String> words;
-    private String longestPrefix;
+    private Lexicon lexicon;
+    // shared by the clusters of the same clustering, never modified at the tail of an unmerged cluster
+    private int[] next;
+    private int head;
+    private int tail;
+    private int size;
+    private int prefixLength;
 
 
-    Cluster(int id, List<String> words) {
+    Cluster(int id, Lexicon lexicon, int[] next, int head, int tail, int size, int prefixLength) {
         this.id = id;
-        this.words = words;
+        this.lexicon = lexicon;
+        this.next = next;
+        this.head = head;
+        this.tail = tail;
+        this.size = size;
+        this.prefixLength = prefixLength;
+    }
 
-        String longestWord = words.get(0);
-        String shortestWord = words.get(0);
 
-        for (String w : this.words) {
-            if (w.length() > longestWord.length()){
-                longestWord = w;
-            }
-            if (w.length() < shortestWord.length()){
-                shortestWord = w;
-            }
-        }
-
-        this.longestPrefix = "";
-        for (int i = 0; i < shortestWord.length(); i++){
-            Character c = shortestWord.charAt(i);
-            boolean stop = false;
-            for (String w : this.words) {
-                if (w.charAt(i) != c){
-                    stop = true;
-                    break;
-                }
-            }
-            if (! stop){
-                this.longestPrefix = this.longestPrefix.concat(c.toString());
-            } else {
-                break;
-            }
+    /**
+     * Length of the prefix shared by the {@code size} words linked in {@code next} from {@code head}.
+     * */
+    static int prefixLength(Lexicon lexicon, int[] next, int head, int size) {
+        int prefixLength = lexicon.length(head);
+        for (int i = 1, w = next[head]; i < size; i++, w = next[w]) {
+            prefixLength = Math.min(prefixLength, lexicon.firstMismatch(head, w));
         }
+        return prefixLength;
     }
 
 
-    float distance(Cluster nextCluster, DistanceMeasure d) {
-        if (this.words.size() == 1 && nextCluster.words.size() == 1) {
+    float distance(Cluster nextCluster, WordDistance d) {
+        if (this.size == 1 && nextCluster.size == 1) {
 
-            return d.calculate(this.words.get(0), nextCluster.words.get(0));
-        } else if (this.words.size() * nextCluster.words.size() < 5000){
+            return d.get(this.head, nextCluster.head);
+        } else if (this.size * nextCluster.size < 5000){
             float maxDist = 0;
-            for (String w1 : this.words){
-                for (String w2: nextCluster.words){
-                    float dist = d.calculate(w1,w2);
+            for (int i = 0, w1 = this.head; i < this.size; i++, w1 = next[w1]){
+                for (int j = 0, w2 = nextCluster.head; j < nextCluster.size; j++, w2 = next[w2]){
+                    float dist = d.get(w1,w2);
                     if (dist > maxDist) {
                         maxDist = dist;
                     }
@@ -77,14 +82,84 @@ public class Cluster {
 
 
     public String getCentralWord(){
-        return this.longestPrefix;
+        return lexicon.prefix(head, prefixLength);
     }
 
     int getId() {
         return id;
     }
 
+    int size() {
+        return size;
+    }
+
+    int getFirstWord() {
+        return head;
+    }
+
+    /**
+     * A new array with the ids of the words of the cluster.
+     * */
+    int[] getWordIds() {
+        int[] wordIds = new int[size];
+        for (int i = 0, w = head; i < size; i++, w = next[w]) {
+            wordIds[i] = w;
+        }
+        return wordIds;
+    }
+
+    /**
+     * View of the words of the cluster. The list is linked: iterating is linear, {@code get} walks from the head.
+     * */
     public List<String> getWords() {
-        return words;
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+                }
+                int w = head;
+                for (int i = 0; i < index; i++) {
+                    w = next[w];
+                }
+                return lexicon.get(w);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int cnt = 0;
+                    private int w = head;
+
+                    @Override
+                    public boolean hasNext() {
+                        return cnt < size;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (cnt >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        String word = lexicon.get(w);
+                        cnt++;
+                        if (cnt < size) {
+                            w = next[w];
+                        }
+                        return word;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 }
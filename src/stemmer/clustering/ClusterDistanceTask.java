@@ -1,69 +1,58 @@
 package stemmer.clustering;
 
-import stemmer.yass.DistanceMeasure;
-
-import java.util.List;
 import java.util.concurrent.RecursiveTask;
 
 
 public class ClusterDistanceTask extends RecursiveTask<Float> {
 
-    private static long SEQUENTIAL_THRESHOLD = 5000;
-
-    static float calculateClusterDistance(Cluster c1, Cluster c2, DistanceMeasure d) {
-        int n1 = c1.getWords().size();
-        int n2 = c2.getWords().size();
-        long last = n1 * n2;
-         int cores = Runtime.getRuntime().availableProcessors();
-        SEQUENTIAL_THRESHOLD = (long)Math.ceil((double) last / (4.0*cores));
-        return ClusterManager.commonPool.invoke(new ClusterDistanceTask(c1, c2, d, 0, last));
+    static float calculateClusterDistance(Cluster c1, Cluster c2, WordDistance d) {
+        int[] words1 = c1.getWordIds();
+        int[] words2 = c2.getWordIds();
+        int n1 = words1.length;
+        int n2 = words2.length;
+        int cores = Runtime.getRuntime().availableProcessors();
+        // every row holds n2 pairs, so the rows are split evenly
+        long sequentialThreshold = (long)Math.ceil((double) n1 / (4.0*cores));
+        return ClusterManager.commonPool.invoke(new ClusterDistanceTask(words1, words2, d, 0, n1, sequentialThreshold));
     }
 
-    private Cluster c1;
-    private Cluster c2;
-    private long start;
-    private long end;
-    private DistanceMeasure d;
-    private int n2;
-
-    private ClusterDistanceTask(Cluster c1, Cluster c2, DistanceMeasure d, long start, long end) {
-        this.c1 = c1;
-        this.c2 = c2;
+    private int[] words1;
+    private int[] words2;
+    // rows of words1
+    private int start;
+    private int end;
+    private WordDistance d;
+    private long sequentialThreshold;
+
+    private ClusterDistanceTask(int[] words1, int[] words2, WordDistance d, int start, int end, long sequentialThreshold) {
+        this.words1 = words1;
+        this.words2 = words2;
         this.start = start;
         this.end = end;
         this.d = d;
-        this.n2 = c2.getWords().size();
-
-    }
-
-    private int _i(long k){
-        return (int)(k / n2); // divisione intera
-    }
+        this.sequentialThreshold = sequentialThreshold;
 
-    private int _j(long k){
-        return (int)(k % n2); // resto
     }
 
     @Override
     protected Float compute() {
-        if(end - start <= SEQUENTIAL_THRESHOLD){
+        if(end - start <= sequentialThreshold){
              float maxDist = 0;
 
-            List<String> words1 = c1.getWords();
-            List<String> words2 = c2.getWords();
-            for (long k = start; k < end; k++){
-                int i = _i(k);
-                int j = _j(k);
-                float distance = d.calculate(words1.get(i), words2.get(j));
-                if (distance > maxDist){
-                    maxDist = distance;
+            for (int i = start; i < end; i++){
+                int w1 = words1[i];
+                for (int j = 0; j < words2.length; j++) {
+                    float distance = d.get(w1, words2[j]);
+                    if (distance > maxDist){
+                        maxDist = distance;
+                    }
                 }
             }
             return maxDist;
         } else {
-             long mid = start + (end - start) / 2;
-            ClusterDistanceTask left  = new ClusterDistanceTask(c1, c2, d, start, mid);
-            ClusterDistanceTask right = new ClusterDistanceTask(c1, c2, d, mid, end);
+             int mid = start + (end - start) / 2;
+            ClusterDistanceTask left  = new ClusterDistanceTask(words1, words2, d, start, mid, sequentialThreshold);
+            ClusterDistanceTask right = new ClusterDistanceTask(words1, words2, d, mid, end, sequentialThreshold);
             left.fork();
             float rightAns = right.compute();
             float leftAns  = left.join();
@@ -1,193 +1,293 @@
 package stemmer.clustering;
 
-import stemmer.yass.DistanceMeasure;
-
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 
 /**
  * Class that deals with managing clusters and the related distance matrix.
+ * <p>
+ * Every cluster has a slot, which is a row of the matrix. The slots are never moved: a merged cluster takes
+ * the slot of its first cluster and the slot of the second one is marked inactive in a bitmap, so a merge
+ * writes one row in place and nothing is compacted.
  * */
-class ClusterManager {
+class ClusterManager implements ClusterMatrix {
 
     static ForkJoinPool commonPool = new ForkJoinPool();
 
-    private List<Cluster> clusters;
-    private DistanceMeasure d;
-    MyCustomBigArray dist;
+    private Cluster[] clusters;
+    private BitSet active;
+    private int n;
+    private int size;
+    private ClusterOrder order;
+    BigFloatArray dist;
+    // the same array as dist when the matrix is encoded, null otherwise
+    private EncodedBigArray codes;
+    private Linkage linkage;
+
+    /* Row-minimum cache: for every row i, the smallest distance among the pairs (i, j) with j > i active
+    * and the slot j where it was found, -1 if there is no such pair. A row has to be scanned again only when
+    * the cluster holding its minimum is merged, which is tracked by the dirty flags.
+    * */
+    private float[] rowMin;
+    private int[] rowArg;
+    private boolean[] dirty;
 
 
-    /* Formulas for converting indexes (note that the array is flipped, so you need to reverse k)
-    * i = n - 2 - floor(sqrt(-8*k + 4*n*(n-1)-7)/2.0 - 0.5)
-    * j = k + i + 1 - n*(n-1)/2 + (n-i)*((n-i)-1)/2
-    * k = (n*(n-1)/2) - (n-i)*((n-i)-1)/2 + j - i - 1
-    * */
+    /**
+     * Index of the pair (i, j), j > i, in the matrix, which holds the pairs in reverse order.
+     * */
     long _k(int i, int j){
-        long n = clusters.size();
+        long n = this.n;
         long k = (n *(n-1))/2 - ( (n-i)*(n-i-1) )/2 + j - i - 1;
         k = ( n*(n-1) )/2 - 1 - k;
         return k;
     }
 
-    int _i(long k){
-        long n = clusters.size();
-        k = ( n*(n-1) )/2 - 1 - k; // re-form k
-        long i = n - 2 - (int)Math.floor(Math.sqrt(-8*k + 4*n*(n-1)-7)/2 - 0.5);
-        return  (int)i; // i
+    /**
+     * Number of pairs (i, j) with j > i in the rows before {@code i}.
+     * */
+    long pairsBefore(int i) {
+        long n = this.n;
+        return i * (n-1) - ((long)i * (i-1))/2;
     }
 
-    int _j(long k){
-        long n = clusters.size();
-        int i = _i(k); // _i turns k, so I have to calculate it first
-        k = (n*(n-1))/2 - 1 - k; // ritrasformo k
-        long j =  (k + i + 1 - (n*(n-1))/2 + ((n-i)*((n-i)-1))/2); // j
-        return (int)j;
+    /**
+     * Row that splits the rows from {@code start} to {@code end} (excluded) in two ranges with about the same
+     * number of pairs. The rows get shorter going down, so it is past the middle row.
+     * */
+    int splitRows(int start, int end) {
+        long half = (pairsBefore(start) + pairsBefore(end)) / 2;
+        int lo = start + 1;
+        int hi = end - 1;
+        // first row whose preceding pairs reach half
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pairsBefore(mid) < half) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
     }
 
     /**
      * Create a new cluster manager in {@code clusters}, using {@code d} as a distance measure.
      * @param clusters clusters to be included in the manager.
-     * @param d distance measure to be used to define the matrix.
+     * @param d distance between the words of the clusters, used to define the matrix.
+     * @param storage where the matrix is kept.
+     * @param linkage how the distance of a merged cluster is updated.
      * */
-    ClusterManager(List<Cluster> clusters, DistanceMeasure d) {
-        this.clusters = clusters;
-        this.d = d;
+    ClusterManager(List<Cluster> clusters, WordDistance d, DistanceMatrixStorage storage, Linkage linkage) {
+        this.linkage = linkage;
+        this.n = clusters.size();
+        this.size = n;
+        this.clusters = clusters.toArray(new Cluster[n]);
+        this.active = new BitSet(n);
+        this.active.set(0, n);
+        this.order = new ClusterOrder(n);
 
-        long n = clusters.size();
-        long tot = (n*(n-1))/2;
-        dist = new MyCustomBigArray(tot);
+        long tot = ((long)n*(n-1))/2;
+        // the mean of two distances is in general not one of the values of the measure
+        float[] values = storage == DistanceMatrixStorage.ENCODED && linkage != Linkage.AVERAGE ? d.values() : null;
+        if (storage == DistanceMatrixStorage.MAPPED) {
+            dist = new MappedBigArray(tot);
+        } else if (values != null && values.length <= EncodedBigArray.MAX_VALUES) {
+            codes = new EncodedBigArray(tot, values);
+            dist = codes;
+            System.out.println("The matrix is encoded with " + values.length + " distinct distances");
+        } else {
+            if (storage == DistanceMatrixStorage.ENCODED) {
+                System.out.println("The distance cannot be encoded, the matrix is kept in floats");
+            }
+            dist = new MyCustomBigArray(tot);
+        }
         System.out.println("create the matrix of distances ...");
 
         long startTime = System.currentTimeMillis();
         BuildDistanceMatrixTask.buildDistanceMatrix(this, d);
         System.out.println("End of matrix creation. Necessary time"
                                 +(System.currentTimeMillis()-startTime)/1000 +" s");
-    }
-
-
-    void deleteClusters(List<Integer> indexes){
 
+        rowMin = new float[n];
+        rowArg = new int[n];
+        dirty = new boolean[n];
+        FindMinDistancePairTask.findRowMinima(this);
+    }
 
-        Collections.sort(indexes);
-        //actuallyDeleteClusters(indexes);
-        int start;
-        int CHUNK_SIZE = 7;
-        for (start = 0; start + CHUNK_SIZE < indexes.size(); start+= CHUNK_SIZE){
-            List<Integer> ar = new ArrayList<>();
-            for (Integer i:  indexes.subList(start, start+CHUNK_SIZE)) {
-                ar.add(i);
+    /**
+     * Scans the row {@code i} of the matrix and stores its minimum in the cache.
+     * */
+    void updateRowMinimum(int i) {
+        float min = Float.POSITIVE_INFINITY;
+        int arg = -1;
+        // the pairs (i, j) of a row are consecutive, in descending order of j
+        long first = _k(i, n-1);
+        if (codes != null) {
+            int minCode = Integer.MAX_VALUE;
+            for (int j = active.previousSetBit(n-1); j > i; j = active.previousSetBit(j-1)) {
+                int code = codes.getCode(first + (n-1-j));
+                if (code < minCode) {
+                    minCode = code;
+                    arg = j;
+                }
             }
-            actuallyDeleteClusters(ar);
-            // have to add the indices
-            for (int q = start+CHUNK_SIZE; q < indexes.size(); q++){
-                indexes.set(q, indexes.get(q) - CHUNK_SIZE);
+            if (arg != -1) {
+                min = codes.decode(minCode);
+            }
+        } else {
+            for (int j = active.previousSetBit(n-1); j > i; j = active.previousSetBit(j-1)) {
+                float value = dist.get(first + (n-1-j));
+                if (value < min || arg == -1) {
+                    min = value;
+                    arg = j;
+                }
             }
         }
-        List<Integer> ar = new ArrayList<>();
-        for (Integer i:  indexes.subList(start, indexes.size())) {
-            ar.add(i);
-        }
-        try {
-            if(ar.size() > 0)
-                actuallyDeleteClusters(ar);
-        } catch (Exception e) {
-            System.out.println(e.toString());
-            System.out.println();
-        }
+        rowMin[i] = min;
+        rowArg[i] = arg;
+        dirty[i] = false;
     }
 
-    private void actuallyDeleteClusters(List<Integer> indexes) {
-        int n = clusters.size();
-        // The same pair may appear more than once
-        //calculate the torque index in the linearized array.
-        Set<Long> toDelete = new HashSet<>();
-        //List<Long> toDeleteIndexes = new ArrayList<>();
-        // Per ogni indice calcolo le coppie in cui compare
-        for (int r : indexes) {
-            // calcolo le coppie del tipo (*,r)
-            for (int i = 0; i < r; i++) {
-                long index = _k(i,r);
-                if (index >= 0 && index < dist.getSize() ){
-                    toDelete.add(index);
-                }
+    /**
+     * Replaces the cluster in slot {@code r} with {@code merged}, the union of the clusters in {@code r}
+     * and {@code s}, and frees the slot {@code s}. The distance of the union from any other cluster q only depends
+     * on d(r, q) and d(s, q) (Lance-Williams): in complete linkage it is the larger one. So row r is updated in place
+     * from the two rows already in the matrix, without looking at the words.
+     * */
+    @Override
+    public void merge(int r, int s, Cluster merged) {
+        int sizeR = clusters[r].size();
+        int sizeS = clusters[s].size();
+        active.clear(s);
+        clusters[s] = null;
+        for (int q = active.nextSetBit(0); q >= 0; q = active.nextSetBit(q+1)) {
+            if (q == r) {
+                continue;
+            }
+            long kr = q < r ? _k(q, r) : _k(r, q);
+            long ks = q < s ? _k(q, s) : _k(s, q);
+            float value;
+            if (codes != null) {
+                // only complete linkage is encoded, and the codes are in the order of the distances
+                int code = Math.max(codes.getCode(kr), codes.getCode(ks));
+                codes.setCode(kr, code);
+                value = codes.decode(code);
+            } else {
+                value = linkage.update(dist.get(kr), dist.get(ks), sizeR, sizeS);
+                dist.set(kr, value);
             }
-            // calculate the pairs of the type (r, *) (there is (r, s))
-            // they are consecutive and there are n-r-1s
-            for (int j = r+1; j < r+1+(n-r-1); j++) {
-                long index = _k(r,j);
-                if (index >= 0 && index < dist.getSize()){
-                    toDelete.add(index);
+            // the pair (q, r) belongs to row q
+            if (q < r) {
+                if (rowArg[q] == r) {
+                    dirty[q] = true;
+                } else if (value < rowMin[q]) {
+                    rowMin[q] = value;
+                    rowArg[q] = r;
                 }
             }
+            if (q < s && rowArg[q] == s) {
+                dirty[q] = true;
+            }
         }
+        dirty[r] = true;
+        dirty[s] = false;
+        clusters[r] = merged;
+        order.moveToHead(r);
+        size--;
+    }
 
-        List<Long> toDeleteIndexes = new ArrayList<>();
-        toDeleteIndexes.addAll(toDelete);
-        // order the indexes to be deleted in descending order
-        Collections.sort(toDeleteIndexes);
-
-      // Overwrite the values to be deleted by compacting the vector.
-        long tot = ((long)n*(n-1))/2;
-        int cntDeleted = 0;
-
-        for (long it = 0; it < tot; it++) {
-            // If have not erased anything yet or not
-            // delete the current index, step to the next item
-            if (cntDeleted == 0 && it != toDeleteIndexes.get(cntDeleted)) { continue; }
-
-            //if (cntDeleted < toDelete.size() && it == toDeleteIndexes.get(cntDeleted))
-            if (cntDeleted < toDeleteIndexes.size() && it == toDeleteIndexes.get(cntDeleted))
-                cntDeleted += 1;
-
-            //Before copying the next index, check that you do not copy
-            //an index that then must be deleted
-            //while (cntDeleted < toDelete.size() && it + cntDeleted == toDeleteIndexes.get(cntDeleted))
-            while (cntDeleted < toDeleteIndexes.size() && it + cntDeleted == toDeleteIndexes.get(cntDeleted))
-
-                cntDeleted += 1;
 
-            if (it + cntDeleted < tot)
-                dist.set(it, dist.get(it+cntDeleted));
-            else
-                break;
+    /**
+     * Finds all the pairs at the minimum distance, using the row-minimum cache to skip the rows
+     * that cannot contain them. The pairs are returned in the order of the {@link ClusterOrder}.
+     * */
+    @Override
+    public List<MinDistancePair> findMinDistancePairs() {
+        float minDist = Float.POSITIVE_INFINITY;
+        boolean found = false;
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i+1)) {
+            if (dirty[i]) {
+                updateRowMinimum(i);
+            }
+            if (rowArg[i] != -1 && (!found || rowMin[i] < minDist)) {
+                minDist = rowMin[i];
+                found = true;
+            }
         }
 
-        // Delete the clusters also from the list
-        for (int i = 0; i < indexes.size(); i++) {
-            int adjustedIndex = indexes.get(i) - i;
-            clusters.remove(adjustedIndex);
+        List<MinDistancePair> minDistancePairs = new ArrayList<>();
+        if (!found) {
+            return minDistancePairs;
+        }
+        int minCode = codes != null ? codes.encode(minDist) : -1;
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i+1)) {
+            if (rowArg[i] == -1 || rowMin[i] != minDist) {
+                continue;
+            }
+            long first = _k(i, n-1);
+            for (int j = active.previousSetBit(n-1); j > i; j = active.previousSetBit(j-1)) {
+                if (codes != null ? codes.getCode(first + (n-1-j)) == minCode : dist.get(first + (n-1-j)) == minDist) {
+                    minDistancePairs.add(order.pair(i, j, minDist));
+                }
+            }
         }
+        order.sort(minDistancePairs);
+        return minDistancePairs;
     }
 
+    /**
+     * Puts {@code merged} in the slot {@code r} and frees the slot {@code s}, like {@link #merge(int, int, Cluster)}
+     * but leaving the matrix to the caller, who has already written the distances of the merged cluster in row r.
+     * The row-minimum cache is not kept, so {@link #findMinDistancePairs()} cannot be used afterwards.
+     * */
+    void replace(int r, int s, Cluster merged) {
+        active.clear(s);
+        clusters[s] = null;
+        clusters[r] = merged;
+        order.moveToHead(r);
+        size--;
+    }
 
-    void insert(Cluster cluster){
-        clusters.add(0, cluster);
-        int n = clusters.size();
-
+    /**
+     * Distance between the clusters in the active slots {@code a} and {@code b}.
+     * */
+    float distance(int a, int b) {
+        return distance(a < b ? _k(a, b) : _k(b, a));
+    }
 
-        int i = 0;  // entered the cluster in the head, has index 0
-        for (int j = i+1; j < n; j++) {
-            long k = _k(i, j);
-            dist.set(k, clusters.get(i).distance(clusters.get(j), d));
-        }
+    /**
+     * Distance at the position {@code k} of the matrix.
+     * */
+    float distance(long k) {
+        return codes != null ? codes.decode(codes.getCode(k)) : dist.get(k);
     }
 
+    boolean isActive(int slot) {
+        return active.get(slot);
+    }
 
-    List<MinDistancePair> findMinDistancePairs() {
-        return FindMinDistancePairTask.findMinDistancePairs(this);
+    /**
+     * First active slot from {@code slot} on, -1 if there is none.
+     * */
+    int nextActive(int slot) {
+        return active.nextSetBit(slot);
     }
 
-    int size() {
-        return clusters.size();
+    @Override
+    public int size() {
+        return size;
     }
 
-    Cluster getCluster(int i){
-        return clusters.get(i);
+    /**
+     * Number of slots, active or not.
+     * */
+    int slots() {
+        return n;
     }
 
-    void resize() {
-        long n = this.clusters.size();
-        long newSize = (n*(n-1))/2;
-        dist.resize(newSize);
+    @Override
+    public Cluster getCluster(int slot){
+        return clusters[slot];
     }
 }
@@ -0,0 +1,27 @@
+package stemmer.clustering;
+
+import java.util.List;
+
+/**
+ * Clusters in slots together with the distances between them, as used by the clustering loop.
+ * */
+interface ClusterMatrix {
+
+    /**
+     * Finds all the pairs of active slots at the minimum distance, in the order in which they have to be merged.
+     * The list is empty when no pair is left.
+     * */
+    List<MinDistancePair> findMinDistancePairs();
+
+    /**
+     * Replaces the clusters in the slots {@code r} and {@code s} with {@code merged}, which takes the slot {@code r}.
+     * */
+    void merge(int r, int s, Cluster merged);
+
+    /**
+     * Number of active clusters.
+     * */
+    int size();
+
+    Cluster getCluster(int slot);
+}
@@ -0,0 +1,58 @@
+package stemmer.clustering;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the order in which the clusters appeared in the list of the original clustering algorithm:
+ * the initial clusters in the order of the lexicon, and every merged cluster at the head.
+ * <p>
+ * Managers that store the clusters in fixed slots use it to visit the pairs at the
+ * minimum distance in the same order as the original linearized matrix, so that they produce the same merge history.
+ * */
+class ClusterOrder {
+
+    private int[] keys;
+    private int headKey = -1;
+
+    ClusterOrder(int n) {
+        keys = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+    }
+
+    /**
+     * Puts the cluster in slot {@code slot} at the head of the list.
+     * */
+    void moveToHead(int slot) {
+        keys[slot] = headKey--;
+    }
+
+    /**
+     * Creates the pair of the slots {@code a} and {@code b}, with the one closer to the head as first cluster.
+     * */
+    MinDistancePair pair(int a, int b, float dist) {
+        return keys[a] < keys[b] ? new MinDistancePair(a, b, dist) : new MinDistancePair(b, a, dist);
+    }
+
+    /**
+     * Sorts the pairs in the order of the linearized matrix: by first cluster and then by second cluster,
+     * both from the tail of the list towards the head.
+     * */
+    void sort(List<MinDistancePair> pairs) {
+        Collections.sort(pairs, new Comparator<MinDistancePair>() {
+            @Override
+            public int compare(MinDistancePair p1, MinDistancePair p2) {
+                if (keys[p1.getR()] != keys[p2.getR()]) {
+                    return keys[p1.getR()] > keys[p2.getR()] ? -1 : 1;
+                }
+                if (keys[p1.getS()] != keys[p2.getS()]) {
+                    return keys[p1.getS()] > keys[p2.getS()] ? -1 : 1;
+                }
+                return 0;
+            }
+        });
+    }
+}
@@ -1,5 +1,7 @@
 package stemmer.clustering;
 
+import stemmer.yass.Lexicon;
+
 import java.util.*;
 
 /**
@@ -10,6 +12,11 @@ public class ClusterSet {
     private Map<Integer, Cluster> dict;
     private float threshold;
 
+    // clusters not built yet: the lexicon, the label of every word and the id of the cluster of every label
+    private Lexicon words;
+    private int[] labels;
+    private int[] labelIds;
+
     /**
      * Creates the cluster set, specifying the stop threshold of the clustering algorithm.
      * */
@@ -18,6 +25,52 @@ public class ClusterSet {
         this.threshold = threshold;
     }
 
+    /**
+     * Creates the cluster set of the words with the same label, as emitted to a {@link SnapshotListener}.
+     * The clusters are built only when the set is read.
+     * @param labelIds id of the cluster of every label, by label.
+     * */
+    ClusterSet(float threshold, Lexicon words, int[] labels, int[] labelIds) {
+        this(threshold);
+        this.words = words;
+        this.labels = labels;
+        this.labelIds = labelIds;
+    }
+
+    private void materialize() {
+        if (labels == null) {
+            return;
+        }
+        Lexicon words = this.words;
+        int[] labels = this.labels;
+        int[] labelIds = this.labelIds;
+        this.words = null;
+        this.labels = null;
+        this.labelIds = null;
+
+        int n = labels.length;
+        int[] head = new int[n];
+        int[] tail = new int[n];
+        int[] size = new int[n];
+        int[] next = new int[n];
+        for (int w = 0; w < n; w++) {
+            int label = labels[w];
+            if (size[label] == 0) {
+                head[label] = w;
+            } else {
+                next[tail[label]] = w;
+            }
+            tail[label] = w;
+            size[label]++;
+        }
+        for (int label = 0; label < n; label++) {
+            if (size[label] > 0) {
+                addCluster(new Cluster(labelIds[label], words, next, head[label], tail[label], size[label],
+                        Cluster.prefixLength(words, next, head[label], size[label])));
+            }
+        }
+    }
+
     public float getThreshold() {
         return threshold;
     }
@@ -27,30 +80,35 @@ public class ClusterSet {
     }
 
     void addCluster(Cluster cluster){
+        materialize();
         dict.put(cluster.getId(), cluster);
     }
 
     void removeCluster(int clusterId) {
+        materialize();
         if (dict.keySet().contains(clusterId)) {
             dict.remove(clusterId);
         }
     }
 
     public Cluster getCluster(int clusterId) {
+        materialize();
         return dict.get(clusterId);
     }
 
     public Set<Integer> getClustersId() {
+        materialize();
         return dict.keySet();
     }
 
 
     ClusterSet copy() {
+        materialize();
         ClusterSet newCopy = new ClusterSet(threshold);
 
         for (Integer key : dict.keySet()) {
-            Cluster newCluster = new Cluster( dict.get(key).getId(), new ArrayList<>(dict.get(key).getWords()));
-            newCopy.addCluster(newCluster);
+            // the clusters are immutable, the copy can share them
+            newCopy.addCluster(dict.get(key));
         }
 
         return newCopy;
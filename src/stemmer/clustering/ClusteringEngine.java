@@ -0,0 +1,24 @@
+package stemmer.clustering;
+
+/**
+ * Implementations of the agglomerative clustering. Only DENSE supports every {@link Linkage}: the other engines are
+ * for complete linkage, and with the other linkages DENSE is used in their place. Single linkage is always clustered
+ * as a minimum spanning tree, whatever the engine.
+ * */
+public enum ClusteringEngine {
+    /** Full distance matrix. */
+    DENSE,
+    /** Only the pairs within the largest threshold, the history stops at that distance. */
+    SPARSE,
+    /**
+     * Full distance matrix, merged by the nearest-neighbour chain in O(n²) time. Same history as DENSE in complete
+     * linkage.
+     * */
+    CHAIN,
+    /**
+     * Full distance matrix, merged in parallel rounds of reciprocal nearest neighbours. Same history as DENSE in
+     * complete linkage. Almost all of its work is parallel, but there is more of it, so on a single core DENSE is
+     * faster.
+     * */
+    RNN
+}
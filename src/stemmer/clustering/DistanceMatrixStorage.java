@@ -0,0 +1,16 @@
+package stemmer.clustering;
+
+/**
+ * Where the distance matrix of the engines other than {@link ClusteringEngine#SPARSE} is kept.
+ * */
+public enum DistanceMatrixStorage {
+    /** Float arrays on the heap. */
+    HEAP,
+    /** A temporary file mapped in memory, paged in and out by the operating system. */
+    MAPPED,
+    /**
+     * Arrays on the heap with 1 or 2 bytes per pair, for the measures that take a small number of values.
+     * The other measures are kept in {@link #HEAP}.
+     * */
+    ENCODED
+}
@@ -0,0 +1,100 @@
+package stemmer.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Array of distances that can take only the values of a given table, stored as the 1 or 2 byte index
+ * of the value in the table. The table is sorted, so codes compare as the values they stand for and the
+ * minimum or the maximum of some distances can be found on the codes.
+ * */
+class EncodedBigArray implements BigFloatArray {
+
+    // largest number of values that fit in 2 bytes
+    static final int MAX_VALUES = 1 << 16;
+
+    private static final int ARRAY_SIZE = Integer.MAX_VALUE/2;
+
+    private long size;
+    private float[] table;
+    // one of the two is null, depending on the number of values
+    private byte[][] bytes;
+    private short[][] shorts;
+
+    /**
+     * @param values the values that will be stored, sorted in ascending order and without duplicates.
+     *               There must be at most {@link #MAX_VALUES} of them.
+     * */
+    EncodedBigArray(long size, float[] values) {
+        if (values.length > MAX_VALUES) {
+            throw new IllegalArgumentException("Too many values to encode: " + values.length);
+        }
+        this.size = size;
+        this.table = values;
+        int arraysCount = (int)Math.max(1, (size + ARRAY_SIZE - 1) / ARRAY_SIZE);
+        if (values.length <= 1 << 8) {
+            bytes = new byte[arraysCount][];
+        } else {
+            shorts = new short[arraysCount][];
+        }
+        for (int a = 0; a < arraysCount; a++) {
+            int length = (int)Math.min(ARRAY_SIZE, size - (long)a * ARRAY_SIZE);
+            if (bytes != null) {
+                bytes[a] = new byte[length];
+            } else {
+                shorts[a] = new short[length];
+            }
+        }
+    }
+
+    int getCode(long index) {
+        int arrayIndex = (int)(index / ARRAY_SIZE);
+        int innerIndex = (int)(index - (long)arrayIndex * ARRAY_SIZE);
+        if (bytes != null) {
+            return bytes[arrayIndex][innerIndex] & 0xFF;
+        }
+        return shorts[arrayIndex][innerIndex] & 0xFFFF;
+    }
+
+    void setCode(long index, int code) {
+        int arrayIndex = (int)(index / ARRAY_SIZE);
+        int innerIndex = (int)(index - (long)arrayIndex * ARRAY_SIZE);
+        if (bytes != null) {
+            bytes[arrayIndex][innerIndex] = (byte)code;
+        } else {
+            shorts[arrayIndex][innerIndex] = (short)code;
+        }
+    }
+
+    /**
+     * The code of {@code value}, which must be in the table.
+     * */
+    int encode(float value) {
+        int code = Arrays.binarySearch(table, value);
+        if (code < 0) {
+            throw new IllegalArgumentException("The value " + value + " is not in the table");
+        }
+        return code;
+    }
+
+    /**
+     * The value of {@code code}.
+     * */
+    float decode(int code) {
+        return table[code];
+    }
+
+    @Override
+    public float get(long index) {
+        return table[getCode(index)];
+    }
+
+    @Override
+    public void set(long index, float value) {
+        setCode(index, encode(value));
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+}
@@ -1,90 +1,49 @@
 package stemmer.clustering;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Class that implements the parallel search of the minimum distance pairs, according to a divide-and-rule strategy
+ * Class that implements the parallel search of the minimum distance of every row of the matrix,
+ * according to a divide-and-rule strategy. The result fills the row-minimum cache of the manager.
  * */
-public class FindMinDistancePairTask extends RecursiveTask<List<MinDistancePair>>{
-    private static long SEQUENTIAL_THRESHOLD = 100000;
+public class FindMinDistancePairTask extends RecursiveAction {
 
-    static List<MinDistancePair> findMinDistancePairs(ClusterManager manager) {
-        // Da notare
-        long n = manager.size();
-        long last = (n * (n-1))/(long)2;
+    static void findRowMinima(ClusterManager manager) {
+        int rows = manager.slots();
         // Cerco di bilanciare la soglia di split in base al numero di core disponibili sulla macchina
         int cores = Runtime.getRuntime().availableProcessors();
-        SEQUENTIAL_THRESHOLD = (long)Math.ceil((double) last / (4.0*cores));
+        long sequentialThreshold = (long)Math.ceil((double) manager.pairsBefore(rows) / (4.0*cores));
 
-        return ClusterManager.commonPool.invoke(new FindMinDistancePairTask(manager, 0, last));
+        ClusterManager.commonPool.invoke(new FindMinDistancePairTask(manager, 0, rows, sequentialThreshold));
     }
 
     private ClusterManager manager;
-    private long start;
-    private long end;
+    private int start;
+    private int end;
+    // pairs per leaf
+    private long sequentialThreshold;
 
-    private FindMinDistancePairTask(ClusterManager manager, long start, long end) {
+    private FindMinDistancePairTask(ClusterManager manager, int start, int end, long sequentialThreshold) {
         this.manager = manager;
         this.start = start;
         this.end = end;
+        this.sequentialThreshold = sequentialThreshold;
     }
 
     @Override
-    protected List<MinDistancePair> compute() {
-        if(end - start <= SEQUENTIAL_THRESHOLD){
+    protected void compute() {
+        if(end - start <= 1 || manager.pairsBefore(end) - manager.pairsBefore(start) <= sequentialThreshold){
             // do sequential work
-            float minDist = Float.POSITIVE_INFINITY;
-            List<MinDistancePair> minDistancePairs = new ArrayList<>();
-            MyCustomBigArray distances = manager.dist;
-            for (long k = start; k < end; k++){
-
-                if (distances.get(k) < minDist){ // <= perché la distanza può essere infinita!
-                    minDistancePairs = new ArrayList<>(); // Ricreo una nuova lista, la distanza minima è diminuita
-                    minDist = distances.get(k);
-                    int r = manager._i(k);
-                    int s = manager._j(k);
-                     if (s < r) {
-                        int t = r;
-                        r = s;
-                        s = t;
-                    }
-
-                    minDistancePairs.add(new MinDistancePair(r,s, minDist));
-                } else if (distances.get(k) == minDist) {
-
-                    minDist = distances.get(k);
-                    int r = manager._i(k);
-                    int s = manager._j(k);
-                     if (s < r) {
-                        int t = r;
-                        r = s;
-                        s = t;
-                    }
-
-                    minDistancePairs.add(new MinDistancePair(r,s, minDist));
-                }
+            for (int i = start; i < end; i++) {
+                manager.updateRowMinimum(i);
             }
-            return minDistancePairs;
         } else {
-            long mid = start + (end - start) / 2;
-            FindMinDistancePairTask left  = new FindMinDistancePairTask(manager, start, mid);
-            FindMinDistancePairTask right = new FindMinDistancePairTask(manager, mid, end);
+            int mid = manager.splitRows(start, end);
+            FindMinDistancePairTask left  = new FindMinDistancePairTask(manager, start, mid, sequentialThreshold);
+            FindMinDistancePairTask right = new FindMinDistancePairTask(manager, mid, end, sequentialThreshold);
             left.fork();
-            List<MinDistancePair> rightAns = right.compute();
-            List<MinDistancePair> leftAns  = left.join();
-
-            if (leftAns.get(0).getDist() == rightAns.get(0).getDist()) {
-                leftAns.addAll(rightAns);
-                return leftAns;
-            } else if (leftAns.get(0).compareTo(rightAns.get(0)) == -1) {
-                // left.dist < right.dist
-                return leftAns;
-            } else {
-                return rightAns;
-            }
-
+            right.compute();
+            left.join();
         }
     }
 }
@@ -1,69 +1,344 @@
 package stemmer.clustering;
 
 import stemmer.yass.DistanceMeasure;
+import stemmer.yass.Lexicon;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
- * Class that implements the hierarchical agglomerative clustering algorithm in complete linkage
+ * Class that implements the hierarchical agglomerative clustering algorithm, in complete linkage unless
+ * another {@link Linkage} is given
  * */
 public class HierarchicalClustering {
 
     public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words){
-        int n = words.size();
+        return calculateClusters(d, words, ClusteringEngine.DENSE, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Clusters {@code words} with the given engine.
+     * @param maxDistance largest distance of interest, usually the largest threshold: the history stops before
+     *                    the first merge farther than that. The {@link ClusteringEngine#SPARSE} engine also keeps
+     *                    only the pairs within it.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words,
+                                                             ClusteringEngine engine, float maxDistance){
+        return calculateClusters(d, words, engine, DistanceMatrixStorage.HEAP, maxDistance);
+    }
+
+    /**
+     * Clusters {@code words} with the given engine, keeping the matrix of the {@link ClusteringEngine#DENSE}
+     * engine in {@code storage}.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words, ClusteringEngine engine,
+                                                             DistanceMatrixStorage storage, float maxDistance){
+        return calculateClusters(d, words, engine, storage, Linkage.COMPLETE, maxDistance);
+    }
+
+    /**
+     * Clusters {@code words} in the given linkage. The engine and the storage are those of complete and average
+     * linkage, single linkage is always clustered as a {@link MinimumSpanningTree}.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words, ClusteringEngine engine,
+                                                             DistanceMatrixStorage storage, Linkage linkage,
+                                                             float maxDistance){
+        final List<MergeHistoryRecord> historyRecords = new ArrayList<>();
+        cluster(d, words, engine, storage, linkage, maxDistance, new MergeRecorder() {
+            @Override
+            public void record(MergeHistoryRecord record) {
+                historyRecords.add(record);
+            }
+        });
+        return historyRecords;
+    }
+
+    /**
+     * Clusters {@code words} and passes the clusters at every threshold to {@code listener} as soon as the
+     * clustering exceeds it, instead of returning the history. The history is never kept, except for the
+     * histories of the partitions when {@code partitioned} is set, which are needed to stitch them.
+     * The clustering stops at the largest threshold.
+     * */
+    public static void calculateSnapshots(DistanceMeasure d, List<String> words, boolean partitioned, ClusteringEngine engine,
+                                          DistanceMatrixStorage storage, float[] thresholds, SnapshotListener listener){
+        calculateSnapshots(d, words, partitioned, engine, storage, Linkage.COMPLETE, thresholds, listener);
+    }
+
+    /**
+     * Like {@link #calculateSnapshots(DistanceMeasure, List, boolean, ClusteringEngine, DistanceMatrixStorage, float[], SnapshotListener)}
+     * in the given linkage.
+     * */
+    public static void calculateSnapshots(DistanceMeasure d, List<String> words, boolean partitioned, ClusteringEngine engine,
+                                          DistanceMatrixStorage storage, Linkage linkage, float[] thresholds,
+                                          SnapshotListener listener){
+        float maxDistance = Float.NEGATIVE_INFINITY;
+        for (float t : thresholds) {
+            maxDistance = Math.max(maxDistance, t);
+        }
+        SnapshotEmitter emitter = new SnapshotEmitter(words.size(), thresholds, listener);
+        if (partitioned) {
+            for (MergeHistoryRecord record : calculateClusters(d, words, true, engine, storage, linkage, maxDistance)) {
+                emitter.record(record);
+            }
+        } else {
+            cluster(d, words, engine, storage, linkage, maxDistance, emitter);
+        }
+        emitter.finish();
+    }
+
+    private static void cluster(DistanceMeasure d, List<String> words, ClusteringEngine engine,
+                                DistanceMatrixStorage storage, Linkage linkage, float maxDistance,
+                                MergeRecorder recorder){
+        // the clustering reads the words only through the packed lexicon
+        Lexicon lexicon = Lexicon.of(words);
+        int n = lexicon.size();
         int printInterval = (int)Math.max(10, n*0.00005);
 
-        //Create n clusters, each containing a word
+        WordDistance wordDistance = WordDistance.create(lexicon, d);
+        if (linkage == Linkage.SINGLE) {
+            MinimumSpanningTree.cluster(n, wordDistance, maxDistance, recorder);
+            return;
+        }
+        if (engine != ClusteringEngine.DENSE && linkage != Linkage.COMPLETE) {
+            // a pair left out of the sparse matrix is not known to keep the union out of it, and the merges of CHAIN
+            // and RNN are in another order, which changes the rounding of the float means
+            System.out.println("The " + engine.name().toLowerCase() + " engine supports only complete linkage,"
+                    + " the dense engine is used");
+            engine = ClusteringEngine.DENSE;
+        }
+
+        //Create n clusters, each containing a word, linked in the same array
         List<Cluster> clusters = new ArrayList<>();
-        for (int i = 0; i < words.size(); i++){
-            List<String> clusterWords = new ArrayList<>();
-            clusterWords.add(words.get(i));
-            clusters.add(new Cluster(i, clusterWords));
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++){
+            clusters.add(new Cluster(i, lexicon, next, i, i, 1, lexicon.length(i)));
         }
         // nextId = n
-        return clusterer(d, clusters, n);
+        if (engine == ClusteringEngine.CHAIN) {
+            NearestNeighbourChain.cluster(new ClusterManager(clusters, wordDistance, storage, linkage), maxDistance, recorder);
+            return;
+        }
+        if (engine == ClusteringEngine.RNN) {
+            ReciprocalNearestNeighbours.cluster(new ClusterManager(clusters, wordDistance, storage, linkage), maxDistance, recorder);
+            return;
+        }
+        ClusterMatrix manager;
+        if (engine == ClusteringEngine.SPARSE) {
+            manager = new SparseClusterManager(clusters, wordDistance, maxDistance);
+        } else {
+            manager = new ClusterManager(clusters, wordDistance, storage, linkage);
+        }
+        clusterer(manager, n, maxDistance, printInterval, recorder);
+    }
+
+    /**
+     * Like {@link #calculateClusters(DistanceMeasure, List)}, optionally splitting the lexicon by initial character.
+     * <p>
+     * With {@code partitioned} the words are grouped by their first character and every group is clustered
+     * on its own, in parallel, with a distance matrix of the size of the group. This is exact for the measures
+     * that are infinite when the first characters differ (d2, d3 and d4): such words can only be merged at an
+     * infinite distance, which the stitched history does last, joining the roots of the groups.
+     * If the measure gives a finite distance across the groups, the whole lexicon is clustered as usual.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words, boolean partitioned){
+        return calculateClusters(d, words, partitioned, ClusteringEngine.DENSE, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Clusters {@code words} with the given engine, optionally splitting the lexicon by initial character
+     * as in {@link #calculateClusters(DistanceMeasure, List, boolean)}. The groups are joined at an infinite
+     * distance only when {@code maxDistance} is infinite.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words, boolean partitioned,
+                                                             ClusteringEngine engine, float maxDistance){
+        return calculateClusters(d, words, partitioned, engine, DistanceMatrixStorage.HEAP, maxDistance);
+    }
+
+    /**
+     * Like {@link #calculateClusters(DistanceMeasure, List, boolean, ClusteringEngine, float)}, keeping the
+     * matrices of the {@link ClusteringEngine#DENSE} engine in {@code storage}.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words, boolean partitioned,
+                                                             ClusteringEngine engine, DistanceMatrixStorage storage,
+                                                             float maxDistance){
+        return calculateClusters(d, words, partitioned, engine, storage, Linkage.COMPLETE, maxDistance);
+    }
+
+    /**
+     * Like {@link #calculateClusters(DistanceMeasure, List, boolean, ClusteringEngine, DistanceMatrixStorage, float)}
+     * in the given linkage. The partitions are exact in any linkage: the distance between two clusters of different
+     * partitions is infinite if all the distances between their words are.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(final DistanceMeasure d, List<String> words, boolean partitioned,
+                                                             final ClusteringEngine engine, final DistanceMatrixStorage storage,
+                                                             final Linkage linkage, final float maxDistance){
+        if (!partitioned) {
+            return calculateClusters(d, words, engine, storage, linkage, maxDistance);
+        }
+
+        Lexicon lexicon = Lexicon.of(words);
+        Map<Character, List<Integer>> buckets = new TreeMap<>();
+        for (int i = 0; i < lexicon.size(); i++) {
+            Character initial = lexicon.charAt(i, 0);
+            List<Integer> bucket = buckets.get(initial);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets.put(initial, bucket);
+            }
+            bucket.add(i);
+        }
+        final List<int[]> bucketWords = new ArrayList<>();
+        for (List<Integer> bucket : buckets.values()) {
+            int[] ids = new int[bucket.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = bucket.get(i);
+            }
+            bucketWords.add(ids);
+        }
+
+        if (bucketWords.size() > 1 &&
+                !Float.isInfinite(d.calculate(lexicon, bucketWords.get(0)[0], bucketWords.get(1)[0]))) {
+            System.out.println("The distance " + d.getName() + " is finite between different initials, " +
+                    "the lexicon is clustered without partitioning");
+            return calculateClusters(d, lexicon, engine, storage, linkage, maxDistance);
+        }
+        System.out.println("Lexicon split in " + bucketWords.size() + " partitions by initial character");
+
+        List<Callable<List<MergeHistoryRecord>>> tasks = new ArrayList<>();
+        for (final int[] ids : bucketWords) {
+            final Lexicon partition = lexicon.select(ids);
+            tasks.add(new Callable<List<MergeHistoryRecord>>() {
+                @Override
+                public List<MergeHistoryRecord> call() {
+                    if (partition.size() < 2) {
+                        return new ArrayList<>();
+                    }
+                    return calculateClusters(d, partition, engine, storage, linkage, maxDistance);
+                }
+            });
+        }
+
+        List<List<MergeHistoryRecord>> histories = new ArrayList<>();
+        try {
+            for (Future<List<MergeHistoryRecord>> f : ClusterManager.commonPool.invokeAll(tasks)) {
+                histories.add(f.get());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return stitchHistories(lexicon.size(), bucketWords, histories, maxDistance);
     }
 
+    /**
+     * Merges the histories of the partitions into one history over the whole lexicon, in ascending order of
+     * distance. Cluster ids are translated to the global numbering: the words keep their index in the lexicon
+     * and the merged clusters are numbered from {@code n} in the order of the stitched history.
+     * If {@code maxDistance} is infinite, the clusters left are finally joined at an infinite distance.
+     * */
+    private static List<MergeHistoryRecord> stitchHistories(int n, List<int[]> bucketWords, List<List<MergeHistoryRecord>> histories,
+                                                            float maxDistance) {
+        int buckets = bucketWords.size();
+        // For every partition, local cluster id -> global cluster id
+        int[][] globalIds = new int[buckets][];
+        int[] next = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            int[] ids = bucketWords.get(b);
+            globalIds[b] = new int[Math.max(1, 2*ids.length - 1)];
+            System.arraycopy(ids, 0, globalIds[b], 0, ids.length);
+        }
 
-    private static List<MergeHistoryRecord> clusterer(DistanceMeasure d, List<Cluster> clusters, int nextId) {
-        int printInterval = (int)Math.max(10, clusters.size()*0.00005);
-        ClusterManager manager = new ClusterManager(clusters, d);
+        List<MergeHistoryRecord> history = new ArrayList<>(Math.max(0, n - 1));
+        int nextId = n;
+        while (true) {
+            int best = -1;
+            for (int b = 0; b < buckets; b++) {
+                List<MergeHistoryRecord> h = histories.get(b);
+                if (next[b] < h.size() && (best == -1 || h.get(next[b]).getDist() < histories.get(best).get(next[best]).getDist())) {
+                    best = b;
+                }
+            }
+            if (best == -1) {
+                break;
+            }
+            MergeHistoryRecord record = histories.get(best).get(next[best]);
+            next[best]++;
+            int[] ids = globalIds[best];
+            ids[record.getCres()] = nextId;
+            history.add(new MergeHistoryRecord(ids[record.getC1()], ids[record.getC2()], nextId, record.getDist(),
+                    n - history.size() - 1));
+            nextId++;
+        }
+
+        if (maxDistance != Float.POSITIVE_INFINITY) {
+            return history;
+        }
+        // The clusters that were never merged are the roots of the partitions
+        boolean[] merged = new boolean[nextId];
+        for (MergeHistoryRecord record : history) {
+            merged[record.getC1()] = true;
+            merged[record.getC2()] = true;
+        }
+        int root = -1;
+        int last = nextId;
+        for (int c = 0; c < last; c++) {
+            if (merged[c]) {
+                continue;
+            }
+            if (root == -1) {
+                root = c;
+                continue;
+            }
+            history.add(new MergeHistoryRecord(root, c, nextId, Float.POSITIVE_INFINITY, n - history.size() - 1));
+            root = nextId;
+            nextId++;
+        }
+        return history;
+    }
+
+
+    /**
+     * Merges the clusters of {@code manager} until one is left, until the manager has no pair left or
+     * until the minimum distance exceeds {@code maxDistance}.
+     * At every iteration all the pairs at the minimum distance are merged, skipping the clusters already merged
+     * in the same iteration. The merged cluster takes the slot of the first one as soon as it is created.
+     * Every merge is passed to {@code recorder}.
+     * */
+    private static void clusterer(ClusterMatrix manager, int nextId, float maxDistance, int printInterval,
+                                  MergeRecorder recorder) {
         int cntIter = 0;
         long startTime = System.currentTimeMillis();
-        List<MergeHistoryRecord> historyRecords = new ArrayList<>();
+        // iteration in which every slot was last merged
+        int[] mergedIn = new int[nextId];
         while (manager.size() != 1){
             List<MinDistancePair> minDistancePairs = manager.findMinDistancePairs();
-            Set<Integer> mergedCluster = new HashSet<>();
-            List<Cluster> newClusters = new ArrayList<>();
+            if (minDistancePairs.isEmpty() || minDistancePairs.get(0).getDist() > maxDistance) {
+                // nothing left within the distances of interest, the remaining merges are never read
+                break;
+            }
+            int round = cntIter + 1;
 
             for (MinDistancePair pair: minDistancePairs) {
                 int r = pair.getR();
                 int s = pair.getS();
-                if (mergedCluster.contains(r) || mergedCluster.contains(s)){
+                if (mergedIn[r] == round || mergedIn[s] == round){
                     continue;
                 }
-                newClusters.add(Cluster.merge(nextId, manager.getCluster(r), manager.getCluster(s)));
-                historyRecords.add(new MergeHistoryRecord(
+                Cluster merged = Cluster.merge(nextId, manager.getCluster(r), manager.getCluster(s));
+                recorder.record(new MergeHistoryRecord(
                         manager.getCluster(r).getId(),
                         manager.getCluster(s).getId(),
                         nextId,
                         pair.getDist(),
-                        manager.size() - newClusters.size())
+                        manager.size() - 1)
                 );
-                mergedCluster.add(r);
-                mergedCluster.add(s);
+                manager.merge(r, s, merged);
+                mergedIn[r] = round;
+                mergedIn[s] = round;
                 nextId++;
-
             }
-            List<Integer> toDelete = new ArrayList<>();
-            toDelete.addAll(mergedCluster);
-            manager.deleteClusters(toDelete);
 
-            for (Cluster c : newClusters) {
-                manager.insert(c);
-            }
-
-            manager.resize();
             cntIter++;
             if (cntIter % (printInterval)  == 0) {
                 System.out.println("Iteration: " + cntIter + " number of clusters present: "+ manager.size() +
@@ -71,7 +346,5 @@ public class HierarchicalClustering {
             }
         }
         System.out.println("Iterations necessary: " + cntIter);
-        return historyRecords;
     }
 }
-
@@ -1,56 +1,43 @@
 package stemmer.clustering;
 
+import stemmer.yass.Lexicon;
+
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Construct class reconstructs various sets of clusters from an operation history
  * merge of the hierarchical clustering algorithm.
+ * <p>
+ * The history is replayed once on a union-find over the words ({@link SnapshotEmitter}), which at every threshold
+ * gives the label of the cluster of every word. The clusters of a set are built from the labels only when the set
+ * is read.
  * */
 public class HistoryClusterBuilder {
 
     public static List<ClusterSet> buildSetsFromHistory(List<String> words, List<MergeHistoryRecord> history, float[] thresholds){
-
-        List<ClusterSet> snapshots = new ArrayList<>();
-
-        ClusterSet clusterSet = new ClusterSet(0);
-
-        // Reconstructs the initial status of the clustering algorithm
-        for (int i = 0; i < words.size(); i++) {
-            List<String> cw = new ArrayList<>();
-            cw.add(words.get(i));
-            clusterSet.addCluster(new Cluster(i, cw));
-        }
-        int nextId = words.size();
-
-        // Sort the thresholds in ascending order
-        Arrays.sort(thresholds);
-        int cntThreshold = 0;
-
-        for (MergeHistoryRecord record : history) {
-            if (cntThreshold < thresholds.length && record.getDist() > thresholds[cntThreshold]) {
-
-                ClusterSet newSet = clusterSet.copy();
-                newSet.setThreshold(thresholds[cntThreshold]);
-                snapshots.add(newSet);
-                cntThreshold++;
-            }
-
-            Cluster cluster1 = clusterSet.getCluster(record.getC1());
-            Cluster cluster2 = clusterSet.getCluster(record.getC2());
-            try {
-                Cluster merged = Cluster.merge(nextId, cluster1, cluster2);
-                nextId++;
-                clusterSet.removeCluster(record.getC1());
-                clusterSet.removeCluster(record.getC2());
-                clusterSet.addCluster(merged);
-            } catch (Exception e){
-                System.err.println(e.toString());
-                System.exit(123);
+        final Lexicon lexicon = Lexicon.of(words);
+
+        final List<ClusterSet> snapshots = new ArrayList<>();
+        final SnapshotEmitter[] emitter = new SnapshotEmitter[1];
+        emitter[0] = new SnapshotEmitter(words.size(), thresholds, new SnapshotListener() {
+            @Override
+            public void onSnapshot(float threshold, int[] labels) {
+                int[] labelIds = new int[labels.length];
+                for (int w = 0; w < labels.length; w++) {
+                    if (labels[w] == w) {
+                        labelIds[w] = emitter[0].clusterId(w);
+                    }
+                }
+                snapshots.add(new ClusterSet(threshold, lexicon, labels, labelIds));
             }
+        });
 
+        for (MergeHistoryRecord record : history) {
+            emitter[0].record(record);
         }
+        // A history that stops before exceeding the largest thresholds already holds their final state
+        emitter[0].finish();
 
         return snapshots;
     }
@@ -0,0 +1,126 @@
+package stemmer.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from non-negative int keys to float values, without boxing.
+ * Entries are read by walking the table: {@link #keyAt(int)} is {@link #EMPTY} for the free places.
+ * */
+class IntFloatMap {
+
+    static final int EMPTY = -1;
+
+    private int[] keys;
+    private float[] values;
+    private int size;
+    private int mask;
+
+    IntFloatMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new float[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int place(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int find(int key) {
+        int i = place(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Value of {@code key}, or {@code missing} if the key is not in the map.
+     * */
+    float get(int key, float missing) {
+        int i = find(key);
+        return i >= 0 ? values[i] : missing;
+    }
+
+    void put(int key, float value) {
+        if ((size + 1) * 2 > keys.length) {
+            int[] oldKeys = keys;
+            float[] oldValues = values;
+            allocate(keys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        int i = place(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    void remove(int key) {
+        int i = find(key);
+        if (i < 0) {
+            return;
+        }
+        // shift back the following entries of the run, so that no tombstone is needed
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int p = place(keys[j]);
+            // the entry at j can fill the hole at i only if its place is not in (i, j]
+            if ((i <= j) ? (i < p && p <= j) : (i < p || p <= j)) {
+                continue;
+            }
+            keys[i] = keys[j];
+            values[i] = values[j];
+            i = j;
+        }
+        keys[i] = EMPTY;
+        size--;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    int keyAt(int i) {
+        return keys[i];
+    }
+
+    float valueAt(int i) {
+        return values[i];
+    }
+}
@@ -0,0 +1,136 @@
+package stemmer.clustering;
+
+import stemmer.yass.Lexicon;
+import stemmer.yass.PrefixDistanceMeasure;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Answers the first mismatch between two words of the lexicon in constant time.
+ * <p>
+ * The lexicon is sorted once and the longest common prefix of every pair of adjacent words is stored.
+ * The common prefix of any two words is the minimum of the adjacent ones between them in the sorted order,
+ * which a sparse table gives with two lookups.
+ * */
+class LcpIndex extends WordDistance {
+
+    private PrefixDistanceMeasure d;
+    private int[] lengths;
+    // position of every word in the sorted lexicon
+    private int[] rank;
+    // sparse[k][r] = min of the adjacent common prefixes in (r-1, r+2^k-1]
+    private int[][] sparse;
+
+    LcpIndex(final Lexicon words, PrefixDistanceMeasure d) {
+        this.d = d;
+        int n = words.size();
+
+        lengths = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            lengths[i] = words.length(i);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return words.compare(a, b);
+            }
+        });
+
+        rank = new int[n];
+        int[] lcp = new int[n];
+        for (int r = 0; r < n; r++) {
+            rank[order[r]] = r;
+            if (r > 0) {
+                lcp[r] = words.firstMismatch(order[r-1], order[r]);
+            }
+        }
+
+        int levels = 1;
+        while ((1 << levels) <= n) {
+            levels++;
+        }
+        sparse = new int[levels][];
+        sparse[0] = lcp;
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k-1);
+            int[] prev = sparse[k-1];
+            int[] level = new int[n - (1 << k) + 1];
+            for (int r = 0; r < level.length; r++) {
+                level[r] = Math.min(prev[r], prev[r + half]);
+            }
+            sparse[k] = level;
+        }
+    }
+
+    /**
+     * Position of the first mismatch between the words {@code w1} and {@code w2}.
+     * */
+    int firstMismatch(int w1, int w2) {
+        if (w1 == w2) {
+            return lengths[w1];
+        }
+        int from = Math.min(rank[w1], rank[w2]) + 1;
+        int to = Math.max(rank[w1], rank[w2]);
+        int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+        return Math.min(sparse[k][from], sparse[k][to - (1 << k) + 1]);
+    }
+
+    @Override
+    float get(int w1, int w2) {
+        return d.calculate(firstMismatch(w1, w2), lengths[w1], lengths[w2]);
+    }
+
+    @Override
+    void row(int w, int from, int to, float[] distances) {
+        int length = lengths[w];
+        int rw = rank[w];
+        for (int j = from; j < to; j++) {
+            int m;
+            if (j == w) {
+                m = length;
+            } else {
+                int lo = Math.min(rw, rank[j]) + 1;
+                int hi = Math.max(rw, rank[j]);
+                int k = 31 - Integer.numberOfLeadingZeros(hi - lo + 1);
+                m = Math.min(sparse[k][lo], sparse[k][hi - (1 << k) + 1]);
+            }
+            distances[j - from] = d.calculate(m, length, lengths[j]);
+        }
+    }
+
+    /**
+     * Enumerates the distance for every pair of word lengths in the lexicon and every possible first mismatch.
+     * */
+    @Override
+    float[] values() {
+        BitSet present = new BitSet();
+        for (int length : lengths) {
+            present.set(length);
+        }
+        int[] distinct = new int[present.cardinality()];
+        for (int l = present.nextSetBit(0), q = 0; l >= 0; l = present.nextSetBit(l+1), q++) {
+            distinct[q] = l;
+        }
+
+        Set<Float> values = new TreeSet<>();
+        for (int l1 : distinct) {
+            for (int l2 : distinct) {
+                for (int m = 0; m <= Math.min(l1, l2); m++) {
+                    values.add(d.calculate(m, l1, l2));
+                }
+            }
+        }
+        float[] result = new float[values.size()];
+        int q = 0;
+        for (float value : values) {
+            result[q++] = value;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,28 @@
+package stemmer.clustering;
+
+/**
+ * Distance between two clusters, from the distances between their words.
+ * */
+public enum Linkage {
+    /** The largest distance between the words, as in the YASS paper. */
+    COMPLETE,
+    /** The smallest distance between the words, clustered as a minimum spanning tree with no matrix. */
+    SINGLE,
+    /** The mean distance between the words, updated in the matrix by Lance-Williams. */
+    AVERAGE;
+
+    /**
+     * Distance of the union of the clusters r and s, of {@code sizeR} and {@code sizeS} words, from a cluster q
+     * at the distances {@code drq} and {@code dsq} from them (Lance-Williams).
+     * */
+    float update(float drq, float dsq, int sizeR, int sizeS) {
+        switch (this) {
+            case SINGLE:
+                return Math.min(drq, dsq);
+            case AVERAGE:
+                return (sizeR * drq + sizeS * dsq) / (sizeR + sizeS);
+            default:
+                return Math.max(drq, dsq);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package stemmer.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Array of floats backed by a temporary file mapped in memory, in segments of at most {@link #SEGMENT_SIZE} floats.
+ * Only the mapped pages take memory, and the operating system writes them back to the file when memory is short,
+ * so the matrix does not have to fit in the heap. The file is deleted as soon as it is mapped.
+ * */
+class MappedBigArray implements BigFloatArray {
+
+    // 2^28 floats, 1 GiB per segment
+    private static final int SEGMENT_BITS = 28;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    private long size;
+    private FloatBuffer[] segments;
+
+    MappedBigArray(long size) {
+        this.size = size;
+        int segmentsCount = (int)((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+        segments = new FloatBuffer[segmentsCount];
+
+        File file = null;
+        try {
+            file = File.createTempFile("distances", ".bin");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size * 4);
+                FileChannel channel = raf.getChannel();
+                for (int s = 0; s < segmentsCount; s++) {
+                    long start = (long)s << SEGMENT_BITS;
+                    long length = Math.min(SEGMENT_SIZE, size - start);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start * 4, length * 4);
+                    buffer.order(ByteOrder.nativeOrder());
+                    segments[s] = buffer.asFloatBuffer();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot map the distance matrix on " + file, e);
+        } finally {
+            // the mapping stays valid after the file is deleted, where the system allows it
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    @Override
+    public float get(long index) {
+        return segments[(int)(index >>> SEGMENT_BITS)].get((int)(index & (SEGMENT_SIZE - 1)));
+    }
+
+    @Override
+    public void set(long index, float value) {
+        segments[(int)(index >>> SEGMENT_BITS)].put((int)(index & (SEGMENT_SIZE - 1)), value);
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,175 @@
+package stemmer.clustering;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The merges of an engine that does not merge in the order of the global minimum search of
+ * {@link HierarchicalClustering}, kept so that the history can be given in that order.
+ * <p>
+ * The minimum search merges the pairs in the order ≺: by distance, then as {@link ClusterOrder} sorts them, where
+ * a merged cluster is at the head of the list and the later merges are nearer to it. Comparing two clusters then
+ * means comparing the merges that created them, which {@link #keyLess(int, int)} does, so the ties are broken the
+ * same way whatever the order in which the merges were found. Complete linkage is reducible also with this order:
+ * the union of two clusters is never nearer to a third one than its parts, so any engine that merges reciprocal
+ * nearest neighbours in ≺ finds the same merges, which {@link #record(MergeRecorder)} sorts and numbers.
+ * <p>
+ * The clusters are numbered as the words, and from n in the order in which the merges are found.
+ * */
+class MergeOrder {
+
+    private ClusterManager manager;
+    private int n;
+
+    // cluster in every slot of the manager
+    private int[] slotCluster;
+    // For the cluster n + t: distance of its merge, first and second cluster in the order of ClusterOrder
+    private float[] mergeDist;
+    private int[] mergeLow;
+    private int[] mergeHigh;
+    private int merges;
+
+    // clusters that cannot be merged within the distances of interest any more
+    private boolean[] retired;
+
+    /**
+     * The merges of the clusters of {@code manager}, which have to be the single words in their order.
+     * */
+    MergeOrder(ClusterManager manager) {
+        this.manager = manager;
+        this.n = manager.slots();
+        slotCluster = new int[n];
+        for (int i = 0; i < n; i++) {
+            slotCluster[i] = i;
+        }
+        int max = Math.max(0, n - 1);
+        mergeDist = new float[max];
+        mergeLow = new int[max];
+        mergeHigh = new int[max];
+        retired = new boolean[n];
+    }
+
+    /**
+     * Id of the cluster in the slot {@code slot}.
+     * */
+    int cluster(int slot) {
+        return slotCluster[slot];
+    }
+
+    int merges() {
+        return merges;
+    }
+
+    /**
+     * Leaves the slot {@code slot} out of the nearest-neighbour searches. Complete linkage distances only grow with
+     * the merges, so a cluster whose nearest neighbour is too far will never be merged within the same distance.
+     * */
+    void retire(int slot) {
+        retired[slot] = true;
+    }
+
+    boolean isRetired(int slot) {
+        return retired[slot];
+    }
+
+    /**
+     * The active slot nearest to the slot {@code x} in the order ≺, -1 if there is none. Retired slots are skipped.
+     * It only reads, so the slots can be searched in parallel between two merges.
+     * */
+    int nearestNeighbour(int x) {
+        int best = -1;
+        float bestDist = 0;
+        // the pairs (x, q) are read along the row of x for q > x, and down the column of x for q < x
+        long first = x < n-1 ? manager._k(x, n-1) : -1;
+        for (int q = manager.nextActive(0); q >= 0; q = manager.nextActive(q+1)) {
+            if (q == x || retired[q]) {
+                continue;
+            }
+            float dist = manager.distance(q < x ? manager._k(q, x) : first + (n-1-q));
+            if (best == -1 || dist < bestDist) {
+                best = q;
+                bestDist = dist;
+            } else if (dist == bestDist) {
+                // among the pairs (x, q) at the same distance the first one in ≺ has q farthest from the head,
+                // wherever x is
+                int cb = slotCluster[best];
+                int cq = slotCluster[q];
+                if (cb < n && cq < n ? cb < cq : keyLess(cb, cq)) {
+                    best = q;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Logs the merge of the clusters in the slots {@code a} and {@code b}, at their distance in the manager, and
+     * returns the slot that takes the merged cluster: as in the clustering loop, the one nearer to the head.
+     * The id of the merged cluster is then {@link #cluster(int)} of that slot. The manager is left as it is.
+     * */
+    int merge(int a, int b) {
+        int r = keyLess(slotCluster[a], slotCluster[b]) ? a : b;
+        int s = r == a ? b : a;
+        int t = merges++;
+        mergeDist[t] = manager.distance(r, s);
+        mergeLow[t] = slotCluster[r];
+        mergeHigh[t] = slotCluster[s];
+        slotCluster[r] = n + t;
+        return r;
+    }
+
+    /**
+     * Whether the cluster {@code x} is nearer to the head of the {@link ClusterOrder} than the cluster {@code y}.
+     * The words are in their order at the tail, and a merged cluster is nearer to the head than another one
+     * when its merge comes later in ≺.
+     * */
+    boolean keyLess(int x, int y) {
+        while (x != y) {
+            if (x < n || y < n) {
+                return x < n && y < n ? x < y : y < n;
+            }
+            // the later merge is the farther one, or at the same distance the one whose first cluster is nearer
+            // to the head. Two merges never share a cluster, so the first clusters differ.
+            float dx = mergeDist[x - n];
+            float dy = mergeDist[y - n];
+            if (dx != dy) {
+                return dx > dy;
+            }
+            x = mergeLow[x - n];
+            y = mergeLow[y - n];
+        }
+        return false;
+    }
+
+    /**
+     * Passes the merges to {@code recorder} in the order of ≺, with the merged clusters numbered from n in that
+     * order, as {@link HierarchicalClustering} would have produced them.
+     * */
+    void record(MergeRecorder recorder) {
+        Integer[] sorted = new Integer[merges];
+        for (int t = 0; t < merges; t++) {
+            sorted[t] = n + t;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (a.equals(b)) {
+                    return 0;
+                }
+                // the merge of the cluster farther from the head comes first
+                return keyLess(b, a) ? -1 : 1;
+            }
+        });
+        int[] id = new int[n + merges];
+        for (int w = 0; w < n; w++) {
+            id[w] = w;
+        }
+        for (int i = 0; i < merges; i++) {
+            id[sorted[i]] = n + i;
+        }
+        for (int i = 0; i < merges; i++) {
+            int t = sorted[i] - n;
+            recorder.record(new MergeHistoryRecord(id[mergeLow[t]], id[mergeHigh[t]], n + i, mergeDist[t], n - i - 1));
+        }
+    }
+}
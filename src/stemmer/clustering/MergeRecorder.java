@@ -0,0 +1,9 @@
+package stemmer.clustering;
+
+/**
+ * Receives the merges of the clustering algorithm, in the order in which they are done.
+ * */
+interface MergeRecorder {
+
+    void record(MergeHistoryRecord record);
+}
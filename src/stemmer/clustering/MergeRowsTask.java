@@ -0,0 +1,79 @@
+package stemmer.clustering;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class that implements the parallel update of the matrix for a round of merges of disjoint pairs,
+ * according to a divide-and-rule strategy.
+ * <p>
+ * The pair i merges the slot {@code ss[i]} into the slot {@code rs[i]}, and only row {@code rs[i]} is written,
+ * with the complete linkage distance of the union (Lance-Williams). The distance between two merged clusters is
+ * the largest of the four distances between their parts, and it is written only by the pair that comes first,
+ * so no entry is written twice and no entry is read after being written.
+ * */
+public class MergeRowsTask extends RecursiveAction {
+
+    /**
+     * Updates the rows of the first {@code count} pairs of {@code rs} and {@code ss}. {@code pairOf} gives the pair
+     * of every merged slot, -1 for the other slots.
+     * */
+    static void mergeRows(ClusterManager manager, int[] rs, int[] ss, int count, int[] pairOf) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long sequentialThreshold = (long)Math.ceil((double) count / (4.0*cores));
+        ClusterManager.commonPool.invoke(new MergeRowsTask(manager, rs, ss, pairOf, 0, count, sequentialThreshold));
+    }
+
+    private ClusterManager manager;
+    private int[] rs;
+    private int[] ss;
+    private int[] pairOf;
+    private int start;
+    private int end;
+    private long sequentialThreshold;
+
+    private MergeRowsTask(ClusterManager manager, int[] rs, int[] ss, int[] pairOf, int start, int end,
+                          long sequentialThreshold) {
+        this.manager = manager;
+        this.rs = rs;
+        this.ss = ss;
+        this.pairOf = pairOf;
+        this.start = start;
+        this.end = end;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    @Override
+    protected void compute() {
+        if(end - start <= sequentialThreshold){
+            // do sequential work
+            for (int i = start; i < end; i++) {
+                int r = rs[i];
+                int s = ss[i];
+                for (int q = manager.nextActive(0); q >= 0; q = manager.nextActive(q+1)) {
+                    if (q == r || q == s) {
+                        continue;
+                    }
+                    int j = pairOf[q];
+                    float value;
+                    if (j == -1) {
+                        value = Math.max(manager.distance(r, q), manager.distance(s, q));
+                    } else if (j > i && q == rs[j]) {
+                        int sj = ss[j];
+                        value = Math.max(Math.max(manager.distance(r, q), manager.distance(r, sj)),
+                                Math.max(manager.distance(s, q), manager.distance(s, sj)));
+                    } else {
+                        continue;
+                    }
+                    manager.dist.set(r < q ? manager._k(r, q) : manager._k(q, r), value);
+                }
+            }
+        } else {
+            int mid = start + (end - start) / 2;
+            MergeRowsTask left  = new MergeRowsTask(manager, rs, ss, pairOf, start, mid, sequentialThreshold);
+            MergeRowsTask right = new MergeRowsTask(manager, rs, ss, pairOf, mid, end, sequentialThreshold);
+            left.fork();
+            right.compute();
+            left.join();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package stemmer.clustering;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Single linkage clustering of the words as a minimum spanning tree.
+ * <p>
+ * The clusters of single linkage at a distance are the connected components of the words closer than that, so
+ * the dendrogram is given by the edges of a minimum spanning tree taken in ascending order. The tree is built by
+ * Prim's algorithm, which adds the word nearest to the tree at every step and reads every distance once: O(n²)
+ * time, with O(n) memory and no distance matrix.
+ * */
+class MinimumSpanningTree {
+
+    /**
+     * Clusters the {@code n} words of {@code d} and passes the merges not farther than {@code maxDistance} to
+     * {@code recorder}, with the same numbering as {@link HierarchicalClustering}: the words keep their index and
+     * the merged clusters are numbered from n in the order of the history.
+     * */
+    static void cluster(int n, WordDistance d, float maxDistance, MergeRecorder recorder) {
+        if (n < 2) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        // edge t joins the word to[t] to the tree through the word from[t]
+        final float[] weight = new float[n-1];
+        int[] from = new int[n-1];
+        int[] to = new int[n-1];
+
+        boolean[] inTree = new boolean[n];
+        float[] best = new float[n];
+        int[] bestFrom = new int[n];
+        Arrays.fill(best, Float.POSITIVE_INFINITY);
+        Arrays.fill(bestFrom, -1);
+        int u = 0;
+        for (int t = 0; t < n-1; t++) {
+            inTree[u] = true;
+            int v = PrimStepTask.addWord(d, u, inTree, best, bestFrom);
+            weight[t] = best[v];
+            from[t] = bestFrom[v];
+            to[t] = v;
+            u = v;
+        }
+        System.out.println("Minimum spanning tree built. Time passed: "
+                + (System.currentTimeMillis() - startTime)/1000 + " s");
+
+        Integer[] edges = new Integer[n-1];
+        for (int t = 0; t < edges.length; t++) {
+            edges[t] = t;
+        }
+        // the order of the edges at the same distance does not change the clusters at any threshold
+        Arrays.sort(edges, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Float.compare(weight[a], weight[b]);
+            }
+        });
+
+        // union-find over the words, with the id of the cluster of every root
+        int[] parent = new int[n];
+        int[] clusterId = new int[n];
+        for (int w = 0; w < n; w++) {
+            parent[w] = w;
+            clusterId[w] = w;
+        }
+        int nextId = n;
+        for (int e : edges) {
+            if (weight[e] > maxDistance) {
+                break;
+            }
+            int a = find(parent, from[e]);
+            int b = find(parent, to[e]);
+            int ca = clusterId[a];
+            int cb = clusterId[b];
+            // as in the clustering loop, the first cluster is the one nearer to the head of the ClusterOrder:
+            // the latest merged cluster, or the first word
+            boolean aFirst = ca >= n || cb >= n ? ca > cb : ca < cb;
+            recorder.record(new MergeHistoryRecord(aFirst ? ca : cb, aFirst ? cb : ca, nextId, weight[e],
+                    n - (nextId - n) - 1));
+            parent[b] = a;
+            clusterId[a] = nextId;
+            nextId++;
+        }
+    }
+
+    private static int find(int[] parent, int w) {
+        while (parent[w] != w) {
+            parent[w] = parent[parent[w]];
+            w = parent[w];
+        }
+        return w;
+    }
+}
@@ -4,7 +4,7 @@ package stemmer.clustering;
 import java.util.ArrayList;
 import java.util.List;
 
-class MyCustomBigArray {
+class MyCustomBigArray implements BigFloatArray {
 
     //private static final int ARRAY_SIZE = 10;
     private static final int ARRAY_SIZE = Integer.MAX_VALUE/2;
@@ -25,7 +25,8 @@ class MyCustomBigArray {
         arrays.add(new float[reminder]);
     }
 
-    void set(long index, float value) {
+    @Override
+    public void set(long index, float value) {
         int arrayIndex = (int) (index / (long)ARRAY_SIZE);
         int innerIndex = (int) (index - ((long)arrayIndex * (long)ARRAY_SIZE));
 
@@ -44,7 +45,8 @@ class MyCustomBigArray {
         }
     }
 
-    float get(long index) {
+    @Override
+    public float get(long index) {
         int arrayIndex = (int) (index / (long)ARRAY_SIZE);
         int innerIndex = (int) (index - ((long)arrayIndex * (long)ARRAY_SIZE));
         try{
@@ -63,17 +65,8 @@ class MyCustomBigArray {
         }
     }
 
-    void resize(long newSize) {
-        int newArraysCount = (int)Math.ceil(newSize / (double)ARRAY_SIZE);
-        if (newArraysCount < arraysCount) {
-            arrays = arrays.subList(0, newArraysCount);
-            assert arrays.size() == newArraysCount;
-            arraysCount = newArraysCount;
-            size = newSize;
-        }
-    }
-
-    long getSize() {
+    @Override
+    public long getSize() {
         return size;
     }
 }
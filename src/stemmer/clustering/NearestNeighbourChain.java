@@ -0,0 +1,75 @@
+package stemmer.clustering;
+
+/**
+ * Complete linkage clustering by the nearest-neighbour chain, on the distance matrix of a {@link ClusterManager}.
+ * <p>
+ * The chain is grown from any cluster by pushing the nearest neighbour of its top, until the top two clusters are
+ * each other's nearest neighbour, and then they are merged. Complete linkage is reducible: a merge never brings
+ * the union closer to a third cluster than its parts were, so the rest of the chain stays valid and every cluster
+ * is pushed a bounded number of times, for O(n²) time in total instead of a minimum search per merge.
+ * <p>
+ * The merges are found in a different order than the global minimum search of {@link HierarchicalClustering},
+ * so the ties are broken and the history is given in the order of the {@link MergeOrder}, which gives the same
+ * dendrogram.
+ * */
+class NearestNeighbourChain {
+
+    private ClusterManager manager;
+    private MergeOrder order;
+    private int n;
+    private float maxDistance;
+
+    private NearestNeighbourChain(ClusterManager manager, float maxDistance) {
+        this.manager = manager;
+        this.order = new MergeOrder(manager);
+        this.n = manager.slots();
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Clusters the words of {@code manager}, whose clusters have to be the single words in their order, and passes
+     * the history to {@code recorder} once the clustering is done, as {@link HierarchicalClustering} would have
+     * produced it. The merges farther than {@code maxDistance} are not done.
+     * */
+    static void cluster(ClusterManager manager, float maxDistance, MergeRecorder recorder) {
+        NearestNeighbourChain chain = new NearestNeighbourChain(manager, maxDistance);
+        long startTime = System.currentTimeMillis();
+        chain.run();
+        System.out.println("Merges found by the nearest-neighbour chain: " + chain.order.merges() + " -Time passed: "
+                + (System.currentTimeMillis() - startTime)/1000 + " s");
+        chain.order.record(recorder);
+    }
+
+    private void run() {
+        int[] chain = new int[n];
+        int top = 0;
+        int next = 0;
+        while (true) {
+            if (top == 0) {
+                // start a new chain from the first cluster that can still be merged
+                while (next < n && (!manager.isActive(next) || order.isRetired(next))) {
+                    next++;
+                }
+                if (next == n) {
+                    return;
+                }
+                chain[top++] = next;
+            }
+            int x = chain[top-1];
+            int y = order.nearestNeighbour(x);
+            if (y == -1 || manager.distance(x, y) > maxDistance) {
+                order.retire(x);
+                top--;
+                continue;
+            }
+            if (top > 1 && chain[top-2] == y) {
+                top -= 2;
+                int r = order.merge(x, y);
+                int s = r == x ? y : x;
+                manager.merge(r, s, Cluster.merge(order.cluster(r), manager.getCluster(r), manager.getCluster(s)));
+            } else {
+                chain[top++] = y;
+            }
+        }
+    }
+}
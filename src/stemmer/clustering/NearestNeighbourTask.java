@@ -0,0 +1,63 @@
+package stemmer.clustering;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class that implements the parallel search of the nearest neighbour of a list of slots,
+ * according to a divide-and-rule strategy.
+ * */
+public class NearestNeighbourTask extends RecursiveAction {
+
+    /**
+     * Finds the nearest neighbour in {@code order} of the first {@code count} slots of {@code slots}, and its
+     * distance, in {@code nn} and {@code nnDist}.
+     * */
+    static void findNearestNeighbours(MergeOrder order, ClusterManager manager, int[] slots, int count,
+                                      int[] nn, float[] nnDist) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long sequentialThreshold = (long)Math.ceil((double) count / (4.0*cores));
+        ClusterManager.commonPool.invoke(new NearestNeighbourTask(order, manager, slots, nn, nnDist,
+                0, count, sequentialThreshold));
+    }
+
+    private MergeOrder order;
+    private ClusterManager manager;
+    private int[] slots;
+    private int[] nn;
+    private float[] nnDist;
+    private int start;
+    private int end;
+    private long sequentialThreshold;
+
+    private NearestNeighbourTask(MergeOrder order, ClusterManager manager, int[] slots, int[] nn, float[] nnDist,
+                                 int start, int end, long sequentialThreshold) {
+        this.order = order;
+        this.manager = manager;
+        this.slots = slots;
+        this.nn = nn;
+        this.nnDist = nnDist;
+        this.start = start;
+        this.end = end;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    @Override
+    protected void compute() {
+        if(end - start <= sequentialThreshold){
+            // do sequential work
+            for (int i = start; i < end; i++) {
+                int x = slots[i];
+                int y = order.nearestNeighbour(x);
+                nn[x] = y;
+                nnDist[x] = y == -1 ? Float.POSITIVE_INFINITY : manager.distance(x, y);
+            }
+        } else {
+            int mid = start + (end - start) / 2;
+            NearestNeighbourTask left  = new NearestNeighbourTask(order, manager, slots, nn, nnDist, start, mid, sequentialThreshold);
+            NearestNeighbourTask right = new NearestNeighbourTask(order, manager, slots, nn, nnDist, mid, end, sequentialThreshold);
+            left.fork();
+            right.compute();
+            left.join();
+        }
+    }
+}
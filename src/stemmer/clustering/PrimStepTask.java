@@ -0,0 +1,77 @@
+package stemmer.clustering;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class that implements a step of Prim's algorithm in parallel, according to a divide-and-rule strategy:
+ * the distances of the words out of the tree from the word just added are read, and the word nearest to the tree
+ * is found.
+ * */
+public class PrimStepTask extends RecursiveTask<Integer> {
+
+    /**
+     * Updates the distance from the tree of the words out of it, after the word {@code u} was added, and returns the
+     * word nearest to the tree. {@code best} and {@code bestFrom} hold the distance of every word from the tree and
+     * the word of the tree at that distance.
+     * */
+    static int addWord(WordDistance d, int u, boolean[] inTree, float[] best, int[] bestFrom) {
+        int n = inTree.length;
+        int cores = Runtime.getRuntime().availableProcessors();
+        long sequentialThreshold = Math.max(1024, (long)Math.ceil((double) n / (4.0*cores)));
+        return ClusterManager.commonPool.invoke(new PrimStepTask(d, u, inTree, best, bestFrom, 0, n, sequentialThreshold));
+    }
+
+    private WordDistance d;
+    private int u;
+    private boolean[] inTree;
+    private float[] best;
+    private int[] bestFrom;
+    private int start;
+    private int end;
+    private long sequentialThreshold;
+
+    private PrimStepTask(WordDistance d, int u, boolean[] inTree, float[] best, int[] bestFrom, int start, int end,
+                         long sequentialThreshold) {
+        this.d = d;
+        this.u = u;
+        this.inTree = inTree;
+        this.best = best;
+        this.bestFrom = bestFrom;
+        this.start = start;
+        this.end = end;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    @Override
+    protected Integer compute() {
+        if(end - start <= sequentialThreshold){
+            // do sequential work
+            int nearest = -1;
+            for (int q = start; q < end; q++) {
+                if (inTree[q]) {
+                    continue;
+                }
+                float dist = d.get(u, q);
+                if (dist < best[q] || bestFrom[q] == -1) {
+                    best[q] = dist;
+                    bestFrom[q] = u;
+                }
+                if (nearest == -1 || best[q] < best[nearest]) {
+                    nearest = q;
+                }
+            }
+            return nearest;
+        } else {
+            int mid = start + (end - start) / 2;
+            PrimStepTask left  = new PrimStepTask(d, u, inTree, best, bestFrom, start, mid, sequentialThreshold);
+            PrimStepTask right = new PrimStepTask(d, u, inTree, best, bestFrom, mid, end, sequentialThreshold);
+            left.fork();
+            int rightAns = right.compute();
+            int leftAns  = left.join();
+            if (leftAns == -1 || (rightAns != -1 && best[rightAns] < best[leftAns])) {
+                return rightAns;
+            }
+            return leftAns;
+        }
+    }
+}
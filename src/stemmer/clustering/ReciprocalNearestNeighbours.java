@@ -0,0 +1,112 @@
+package stemmer.clustering;
+
+/**
+ * Complete linkage clustering in rounds of reciprocal nearest neighbours, on the distance matrix of a
+ * {@link ClusterManager}.
+ * <p>
+ * In every round the nearest neighbour of every cluster is known, and all the pairs of clusters that are each
+ * other's nearest neighbour are merged at once: complete linkage is reducible, so such a pair would be merged
+ * by the global minimum search too, whatever is merged before it. The rows of the merged clusters are updated in
+ * parallel, and the nearest neighbours are searched again, in parallel, only for the merged clusters and for the
+ * clusters whose nearest neighbour was merged. The nearest neighbour of any other cluster stays the same, as
+ * the union is never nearer than its parts.
+ * <p>
+ * The ties are broken and the history is given in the order of the {@link MergeOrder}, which gives the same
+ * dendrogram as {@link HierarchicalClustering}.
+ * */
+class ReciprocalNearestNeighbours {
+
+    private ClusterManager manager;
+    private MergeOrder order;
+    private int n;
+    private float maxDistance;
+
+    // nearest neighbour of every slot and its distance
+    private int[] nn;
+    private float[] nnDist;
+
+    private ReciprocalNearestNeighbours(ClusterManager manager, float maxDistance) {
+        this.manager = manager;
+        this.order = new MergeOrder(manager);
+        this.n = manager.slots();
+        this.maxDistance = maxDistance;
+        nn = new int[n];
+        nnDist = new float[n];
+    }
+
+    /**
+     * Clusters the words of {@code manager}, whose clusters have to be the single words in their order, and passes
+     * the history to {@code recorder} once the clustering is done, as {@link HierarchicalClustering} would have
+     * produced it. The merges farther than {@code maxDistance} are not done.
+     * */
+    static void cluster(ClusterManager manager, float maxDistance, MergeRecorder recorder) {
+        ReciprocalNearestNeighbours rnn = new ReciprocalNearestNeighbours(manager, maxDistance);
+        long startTime = System.currentTimeMillis();
+        int rounds = rnn.run();
+        System.out.println("Rounds necessary: " + rounds + " for " + rnn.order.merges() + " merges -Time passed: "
+                + (System.currentTimeMillis() - startTime)/1000 + " s");
+        rnn.order.record(recorder);
+    }
+
+    private int run() {
+        int[] search = new int[n];
+        int searches = 0;
+        for (int i = 0; i < n; i++) {
+            search[searches++] = i;
+        }
+        int[] rs = new int[n/2];
+        int[] ss = new int[n/2];
+        // pair of the round of every slot, -1 if it is not merged
+        int[] pairOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            pairOf[i] = -1;
+        }
+
+        int rounds = 0;
+        while (true) {
+            NearestNeighbourTask.findNearestNeighbours(order, manager, search, searches, nn, nnDist);
+
+            int pairs = 0;
+            for (int x = manager.nextActive(0); x >= 0; x = manager.nextActive(x+1)) {
+                if (order.isRetired(x)) {
+                    continue;
+                }
+                if (nn[x] == -1 || nnDist[x] > maxDistance) {
+                    order.retire(x);
+                    continue;
+                }
+                int y = nn[x];
+                if (x < y && nn[y] == x) {
+                    int r = order.merge(x, y);
+                    rs[pairs] = r;
+                    ss[pairs] = r == x ? y : x;
+                    pairOf[x] = pairs;
+                    pairOf[y] = pairs;
+                    pairs++;
+                }
+            }
+            if (pairs == 0) {
+                return rounds;
+            }
+            rounds++;
+
+            MergeRowsTask.mergeRows(manager, rs, ss, pairs, pairOf);
+            for (int i = 0; i < pairs; i++) {
+                int r = rs[i];
+                int s = ss[i];
+                manager.replace(r, s, Cluster.merge(order.cluster(r), manager.getCluster(r), manager.getCluster(s)));
+            }
+
+            searches = 0;
+            for (int x = manager.nextActive(0); x >= 0; x = manager.nextActive(x+1)) {
+                if (!order.isRetired(x) && (pairOf[x] != -1 || pairOf[nn[x]] != -1)) {
+                    search[searches++] = x;
+                }
+            }
+            for (int i = 0; i < pairs; i++) {
+                pairOf[rs[i]] = -1;
+                pairOf[ss[i]] = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package stemmer.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Follows a merge history and passes the clusters at every threshold to a {@link SnapshotListener},
+ * without keeping the history.
+ * <p>
+ * The clusters are kept in a union-find over the words (int arrays of parents and ranks), with
+ * the id of every cluster mapped to one of its words, so a merge costs almost constant time and a snapshot
+ * is one pass over the words.
+ * */
+class SnapshotEmitter implements MergeRecorder {
+
+    private int n;
+    private float[] thresholds;
+    private int cntThreshold;
+    private SnapshotListener listener;
+
+    private int[] parent;
+    private byte[] rank;
+    // a word of every cluster, by cluster id; grows with the merges
+    private int[] clusterWord;
+    // id of the cluster of every root of the union-find
+    private int[] rootCluster;
+
+    /**
+     * @param n number of words, the ids of the initial clusters.
+     * @param thresholds thresholds of the snapshots, in any order.
+     * */
+    SnapshotEmitter(int n, float[] thresholds, SnapshotListener listener) {
+        this.n = n;
+        this.thresholds = thresholds.clone();
+        Arrays.sort(this.thresholds);
+        this.listener = listener;
+
+        parent = new int[n];
+        rank = new byte[n];
+        clusterWord = new int[Math.max(1, 2*n - 1)];
+        rootCluster = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            clusterWord[i] = i;
+            rootCluster[i] = i;
+        }
+    }
+
+    private int find(int w) {
+        int root = w;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // path compression
+        while (parent[w] != root) {
+            int next = parent[w];
+            parent[w] = root;
+            w = next;
+        }
+        return root;
+    }
+
+    @Override
+    public void record(MergeHistoryRecord record) {
+        // A merge can exceed several thresholds at once
+        while (cntThreshold < thresholds.length && record.getDist() > thresholds[cntThreshold]) {
+            emit();
+        }
+
+        int a = find(clusterWord[record.getC1()]);
+        int b = find(clusterWord[record.getC2()]);
+        if (rank[a] < rank[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        parent[b] = a;
+        if (rank[a] == rank[b]) {
+            rank[a]++;
+        }
+        clusterWord[record.getCres()] = a;
+        rootCluster[a] = record.getCres();
+    }
+
+    /**
+     * The id in the history of the cluster with label {@code label}, while a snapshot is being emitted.
+     * */
+    int clusterId(int label) {
+        return rootCluster[label];
+    }
+
+    /**
+     * Emits the thresholds that the history never exceeded, which hold the final state.
+     * */
+    void finish() {
+        while (cntThreshold < thresholds.length) {
+            emit();
+        }
+    }
+
+    private void emit() {
+        int[] labels = new int[n];
+        for (int w = 0; w < n; w++) {
+            labels[w] = find(w);
+        }
+        listener.onSnapshot(thresholds[cntThreshold], labels);
+        cntThreshold++;
+    }
+}
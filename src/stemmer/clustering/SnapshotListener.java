@@ -0,0 +1,16 @@
+package stemmer.clustering;
+
+/**
+ * Receives the clusters at every threshold while the clustering is running.
+ * */
+public interface SnapshotListener {
+
+    /**
+     * Called once for every threshold, in ascending order, with the clusters made by all the merges not farther
+     * than {@code threshold}.
+     * @param labels label of the cluster of every word of the lexicon, by index: two words are in the same cluster
+     *               if and only if they have the same label. Labels are indexes of words of the cluster.
+     *               The array belongs to the listener.
+     * */
+    void onSnapshot(float threshold, int[] labels);
+}
@@ -0,0 +1,196 @@
+package stemmer.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cluster manager that keeps only the pairs of clusters within a maximum distance.
+ * <p>
+ * Every cluster has a slot, the merged cluster takes the slot of its first cluster. The neighbours of a slot
+ * are kept in a hash map together with their distance, so memory grows with the size of the neighbourhoods
+ * instead of with n&sup2;. In complete linkage two clusters are within the limit only if every pair of their
+ * words is, so the neighbours of a merged cluster are the common neighbours of the two merged ones.
+ * Once no pair is left, every merge within the limit has been done, in the same order as {@link ClusterManager}.
+ * */
+class SparseClusterManager implements ClusterMatrix {
+
+    private Cluster[] clusters;
+    private IntFloatMap[] neighbours;
+    private ClusterOrder order;
+    private int size;
+
+    // nearest neighbour of every slot, -1 if the slot has no neighbour
+    private float[] nnDist;
+    private int[] nnSlot;
+
+    /**
+     * Create a new cluster manager in {@code clusters}, keeping the pairs not farther than {@code maxDistance}.
+     * @param clusters clusters to be included in the manager.
+     * @param d distance between the words of the clusters.
+     * @param maxDistance largest distance kept in the matrix.
+     * */
+    SparseClusterManager(List<Cluster> clusters, WordDistance d, float maxDistance) {
+        int n = clusters.size();
+        this.clusters = clusters.toArray(new Cluster[n]);
+        this.size = n;
+        this.order = new ClusterOrder(n);
+
+        System.out.println("create the sparse matrix of distances ...");
+        long startTime = System.currentTimeMillis();
+
+        int[][] rowNeighbours = new int[n][];
+        float[][] rowDistances = new float[n][];
+        BuildSparseMatrixTask.buildRows(this.clusters, d, maxDistance, rowNeighbours, rowDistances);
+
+        int[] degree = new int[n];
+        long pairs = 0;
+        for (int i = 0; i < n; i++) {
+            degree[i] += rowNeighbours[i].length;
+            for (int j : rowNeighbours[i]) {
+                degree[j]++;
+            }
+            pairs += rowNeighbours[i].length;
+        }
+        neighbours = new IntFloatMap[n];
+        for (int i = 0; i < n; i++) {
+            neighbours[i] = new IntFloatMap(degree[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int q = 0; q < rowNeighbours[i].length; q++) {
+                neighbours[i].put(rowNeighbours[i][q], rowDistances[i][q]);
+                neighbours[rowNeighbours[i][q]].put(i, rowDistances[i][q]);
+            }
+            rowNeighbours[i] = null;
+            rowDistances[i] = null;
+        }
+        System.out.println("End of matrix creation, " + pairs + " pairs kept. Necessary time"
+                + (System.currentTimeMillis()-startTime)/1000 + " s");
+
+        nnDist = new float[n];
+        nnSlot = new int[n];
+        for (int i = 0; i < n; i++) {
+            updateNearestNeighbour(i);
+        }
+    }
+
+    private void updateNearestNeighbour(int a) {
+        IntFloatMap map = neighbours[a];
+        float min = Float.POSITIVE_INFINITY;
+        int arg = -1;
+        for (int q = 0; q < map.capacity(); q++) {
+            int b = map.keyAt(q);
+            if (b != IntFloatMap.EMPTY && (map.valueAt(q) < min || arg == -1)) {
+                min = map.valueAt(q);
+                arg = b;
+            }
+        }
+        nnDist[a] = min;
+        nnSlot[a] = arg;
+    }
+
+    /**
+     * Finds all the pairs at the minimum distance, in the order of the {@link ClusterOrder}.
+     * The list is empty when no pair within the maximum distance is left.
+     * */
+    @Override
+    public List<MinDistancePair> findMinDistancePairs() {
+        float minDist = Float.POSITIVE_INFINITY;
+        boolean found = false;
+        for (int a = 0; a < clusters.length; a++) {
+            if (clusters[a] != null && nnSlot[a] != -1 && (!found || nnDist[a] < minDist)) {
+                minDist = nnDist[a];
+                found = true;
+            }
+        }
+
+        List<MinDistancePair> minDistancePairs = new ArrayList<>();
+        if (!found) {
+            return minDistancePairs;
+        }
+        for (int a = 0; a < clusters.length; a++) {
+            if (clusters[a] == null || nnSlot[a] == -1 || nnDist[a] != minDist) {
+                continue;
+            }
+            IntFloatMap map = neighbours[a];
+            for (int q = 0; q < map.capacity(); q++) {
+                int b = map.keyAt(q);
+                // every pair is seen from both its slots, keep it once
+                if (b > a && map.valueAt(q) == minDist) {
+                    minDistancePairs.add(order.pair(a, b, minDist));
+                }
+            }
+        }
+        order.sort(minDistancePairs);
+        return minDistancePairs;
+    }
+
+    /**
+     * Replaces the clusters in the slots {@code r} and {@code s} with {@code merged}, which takes the slot {@code r}.
+     * */
+    @Override
+    public void merge(int r, int s, Cluster merged) {
+        IntFloatMap mapR = neighbours[r];
+        IntFloatMap mapS = neighbours[s];
+        mapR.remove(s);
+        mapS.remove(r);
+        for (int q = 0; q < mapS.capacity(); q++) {
+            if (mapS.keyAt(q) != IntFloatMap.EMPTY) {
+                neighbours[mapS.keyAt(q)].remove(s);
+            }
+        }
+
+        // complete linkage: only the common neighbours stay, at the larger of the two distances
+        int[] keys = new int[mapR.size()];
+        float[] values = new float[mapR.size()];
+        int cnt = 0;
+        for (int q = 0; q < mapR.capacity(); q++) {
+            if (mapR.keyAt(q) != IntFloatMap.EMPTY) {
+                keys[cnt] = mapR.keyAt(q);
+                values[cnt] = mapR.valueAt(q);
+                cnt++;
+            }
+        }
+        for (int q = 0; q < cnt; q++) {
+            int c = keys[q];
+            if (mapS.containsKey(c)) {
+                float value = Math.max(values[q], mapS.get(c, 0));
+                mapR.put(c, value);
+                neighbours[c].put(r, value);
+            } else {
+                mapR.remove(c);
+                neighbours[c].remove(r);
+            }
+        }
+
+        // only the slots whose nearest neighbour was one of the two merged clusters have to be scanned again
+        for (int q = 0; q < cnt; q++) {
+            if (nnSlot[keys[q]] == r || nnSlot[keys[q]] == s) {
+                updateNearestNeighbour(keys[q]);
+            }
+        }
+        for (int q = 0; q < mapS.capacity(); q++) {
+            int c = mapS.keyAt(q);
+            if (c != IntFloatMap.EMPTY && nnSlot[c] == s) {
+                updateNearestNeighbour(c);
+            }
+        }
+
+        neighbours[s] = null;
+        clusters[s] = null;
+        nnSlot[s] = -1;
+        clusters[r] = merged;
+        order.moveToHead(r);
+        updateNearestNeighbour(r);
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Cluster getCluster(int slot){
+        return clusters[slot];
+    }
+}
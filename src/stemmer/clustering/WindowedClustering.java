@@ -0,0 +1,347 @@
+package stemmer.clustering;
+
+import stemmer.yass.DistanceManager;
+import stemmer.yass.DistanceMeasure;
+import stemmer.yass.Lexicon;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Approximate clustering of lexicons too large for a distance matrix.
+ * <p>
+ * The YASS distances reward long common prefixes, so the words that end up together are close in the sorted
+ * lexicon. The sorted lexicon is cut in windows of {@code window} words, every one overlapping half of the next,
+ * and every window is clustered on its own, in parallel, with the usual engines. Only a window at a time per worker
+ * is held in memory, and the rest is linear in the number of words.
+ * <p>
+ * The windows are then reconciled: every merge of every window proposes to join the clusters of two of its words.
+ * The proposals are taken in ascending order of distance, and each one is checked against the clusters built so far
+ * from all the windows: its distance is computed again in the linkage over the whole clusters, and if it grew the
+ * proposal goes back in the queue at the new distance. So the clusters that cross a window boundary are joined
+ * only when the words on both sides are within the distance, and every merge of the history is at the true
+ * distance of its clusters. What is lost are the merges that no window proposed.
+ * <p>
+ * The merges at an infinite distance are left out: no threshold ever reads them.
+ * */
+public class WindowedClustering {
+
+    /**
+     * Clusters {@code words} in overlapping windows of {@code window} words of the sorted lexicon, and returns the
+     * reconciled history up to {@code maxDistance}, numbered as the one of {@link HierarchicalClustering}.
+     * */
+    public static List<MergeHistoryRecord> calculateClusters(DistanceMeasure d, List<String> words, int window,
+                                                             ClusteringEngine engine, DistanceMatrixStorage storage,
+                                                             Linkage linkage, float maxDistance) {
+        final List<MergeHistoryRecord> historyRecords = new ArrayList<>();
+        cluster(d, words, window, engine, storage, linkage, maxDistance, new MergeRecorder() {
+            @Override
+            public void record(MergeHistoryRecord record) {
+                historyRecords.add(record);
+            }
+        });
+        return historyRecords;
+    }
+
+    /**
+     * Like {@link #calculateClusters(DistanceMeasure, List, int, ClusteringEngine, DistanceMatrixStorage, Linkage, float)},
+     * passing the clusters at every threshold to {@code listener} as
+     * {@link HierarchicalClustering#calculateSnapshots(DistanceMeasure, List, boolean, ClusteringEngine, DistanceMatrixStorage, Linkage, float[], SnapshotListener)}
+     * does.
+     * */
+    public static void calculateSnapshots(DistanceMeasure d, List<String> words, int window, ClusteringEngine engine,
+                                          DistanceMatrixStorage storage, Linkage linkage, float[] thresholds,
+                                          SnapshotListener listener) {
+        float maxDistance = Float.NEGATIVE_INFINITY;
+        for (float t : thresholds) {
+            maxDistance = Math.max(maxDistance, t);
+        }
+        SnapshotEmitter emitter = new SnapshotEmitter(words.size(), thresholds, listener);
+        cluster(d, words, window, engine, storage, linkage, maxDistance, emitter);
+        emitter.finish();
+    }
+
+    /**
+     * Clusters a sample of {@code sample} consecutive words of the sorted lexicon both exactly and in windows, and
+     * prints how much the two agree at every threshold: the share of the pairs of words clustered together by the
+     * exact clustering that the windows also put together (recall) and the other way round (precision), and the
+     * share of the words whose cluster is exactly the same.
+     * */
+    public static void reportAgreement(DistanceMeasure d, List<String> words, int window, int sample,
+                                       ClusteringEngine engine, DistanceMatrixStorage storage, Linkage linkage,
+                                       float[] thresholds) {
+        Lexicon lexicon = Lexicon.of(words);
+        int[] sorted = sortedWords(lexicon);
+        sample = Math.min(sample, sorted.length);
+        if (sample < 2) {
+            return;
+        }
+        // a fixed slice, so that the reports of different runs can be compared
+        int start = new Random(42).nextInt(sorted.length - sample + 1);
+        Lexicon slice = lexicon.select(Arrays.copyOfRange(sorted, start, start + sample));
+
+        final Map<Float, int[]> exact = new HashMap<>();
+        final Map<Float, int[]> windowed = new HashMap<>();
+        HierarchicalClustering.calculateSnapshots(d, slice, false, engine, storage, linkage, thresholds,
+                new SnapshotListener() {
+                    @Override
+                    public void onSnapshot(float threshold, int[] labels) {
+                        exact.put(threshold, labels.clone());
+                    }
+                });
+        calculateSnapshots(d, slice, window, engine, storage, linkage, thresholds, new SnapshotListener() {
+            @Override
+            public void onSnapshot(float threshold, int[] labels) {
+                windowed.put(threshold, labels.clone());
+            }
+        });
+
+        float[] ordered = thresholds.clone();
+        Arrays.sort(ordered);
+        for (float t : ordered) {
+            int[] a = exact.get(t);
+            int[] b = windowed.get(t);
+            long together = 0;
+            long togetherExact = 0;
+            long togetherWindowed = 0;
+            Map<Long, Integer> both = new HashMap<>();
+            int[] sizeA = new int[sample];
+            int[] sizeB = new int[sample];
+            for (int w = 0; w < sample; w++) {
+                sizeA[a[w]]++;
+                sizeB[b[w]]++;
+                long key = (long) a[w] * sample + b[w];
+                Integer c = both.get(key);
+                both.put(key, c == null ? 1 : c + 1);
+            }
+            for (int c : both.values()) {
+                together += (long) c * (c - 1) / 2;
+            }
+            int sameCluster = 0;
+            for (int w = 0; w < sample; w++) {
+                togetherExact += (long) sizeA[w] * (sizeA[w] - 1) / 2;
+                togetherWindowed += (long) sizeB[w] * (sizeB[w] - 1) / 2;
+                int c = both.get((long) a[w] * sample + b[w]);
+                if (c == sizeA[a[w]] && c == sizeB[b[w]]) {
+                    sameCluster++;
+                }
+            }
+            System.out.println(String.format(Locale.ROOT,
+                    "Window %d, threshold %s, %d words: pair recall %.4f, pair precision %.4f, same cluster %.4f",
+                    window, t, sample,
+                    togetherExact == 0 ? 1.0 : (double) together / togetherExact,
+                    togetherWindowed == 0 ? 1.0 : (double) together / togetherWindowed,
+                    (double) sameCluster / sample));
+        }
+    }
+
+    private static int[] sortedWords(final Lexicon lexicon) {
+        Integer[] order = new Integer[lexicon.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return lexicon.compare(a, b);
+            }
+        });
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = order[i];
+        }
+        return sorted;
+    }
+
+    private static void cluster(final DistanceMeasure d, List<String> words, int window, final ClusteringEngine engine,
+                                final DistanceMatrixStorage storage, final Linkage linkage, final float maxDistance,
+                                MergeRecorder recorder) {
+        final Lexicon lexicon = Lexicon.of(words);
+        int n = lexicon.size();
+        int[] sorted = sortedWords(lexicon);
+        window = Math.max(2, window);
+        int step = Math.max(1, window / 2);
+
+        List<int[]> windowWords = new ArrayList<>();
+        for (int start = 0; ; start += step) {
+            int end = Math.min(n, start + window);
+            windowWords.add(Arrays.copyOfRange(sorted, start, end));
+            if (end == n) {
+                break;
+            }
+        }
+        System.out.println("Lexicon clustered in " + windowWords.size() + " windows of " + window + " words");
+
+        List<Callable<List<Proposal>>> tasks = new ArrayList<>();
+        for (final int[] ids : windowWords) {
+            tasks.add(new Callable<List<Proposal>>() {
+                @Override
+                public List<Proposal> call() {
+                    return propose(d, lexicon, ids, engine, storage, linkage, maxDistance);
+                }
+            });
+        }
+        PriorityQueue<Proposal> queue = new PriorityQueue<>();
+        try {
+            for (Future<List<Proposal>> f : ClusterManager.commonPool.invokeAll(tasks)) {
+                queue.addAll(f.get());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        reconcile(DistanceManager.tabulate(d, lexicon.maxLength()), lexicon, linkage, maxDistance, queue, recorder);
+    }
+
+    /**
+     * Clusters the words {@code ids} of {@code lexicon} and turns every merge into a proposal to join two of the words.
+     * */
+    private static List<Proposal> propose(DistanceMeasure d, Lexicon lexicon, int[] ids, ClusteringEngine engine,
+                                          DistanceMatrixStorage storage, Linkage linkage, float maxDistance) {
+        List<Proposal> proposals = new ArrayList<>();
+        if (ids.length < 2) {
+            return proposals;
+        }
+        List<MergeHistoryRecord> history = HierarchicalClustering.calculateClusters(d, lexicon.select(ids), engine,
+                storage, linkage, maxDistance);
+        // a word of every cluster of the window, in the lexicon
+        int[] word = new int[2 * ids.length - 1];
+        System.arraycopy(ids, 0, word, 0, ids.length);
+        for (MergeHistoryRecord record : history) {
+            word[record.getCres()] = word[record.getC1()];
+            if (!Float.isInfinite(record.getDist())) {
+                proposals.add(new Proposal(word[record.getC1()], word[record.getC2()], record.getDist(), ids[0]));
+            }
+        }
+        return proposals;
+    }
+
+    /**
+     * Takes the proposals in ascending order of distance, merging the clusters of their words at the distance of
+     * the whole clusters when it is not larger than the proposed one.
+     * */
+    private static void reconcile(DistanceMeasure d, Lexicon lexicon, Linkage linkage, float maxDistance,
+                                  PriorityQueue<Proposal> queue, MergeRecorder recorder) {
+        int n = lexicon.size();
+        // union-find over the words, with the words of every root linked from it as in Cluster
+        int[] parent = new int[n];
+        int[] next = new int[n];
+        int[] tail = new int[n];
+        int[] size = new int[n];
+        int[] clusterId = new int[n];
+        for (int w = 0; w < n; w++) {
+            parent[w] = w;
+            tail[w] = w;
+            size[w] = 1;
+            clusterId[w] = w;
+        }
+        int nextId = n;
+        float last = Float.NEGATIVE_INFINITY;
+        while (!queue.isEmpty()) {
+            Proposal p = queue.poll();
+            int a = find(parent, p.w1);
+            int b = find(parent, p.w2);
+            if (a == b) {
+                continue;
+            }
+            float dist = distance(d, lexicon, linkage, next, a, size[a], b, size[b], maxDistance);
+            if (dist > maxDistance || Float.isInfinite(dist)) {
+                continue;
+            }
+            if (dist > p.dist) {
+                // the clusters grew since the proposal was made
+                queue.add(new Proposal(p.w1, p.w2, dist, p.order));
+                continue;
+            }
+            // in average and single linkage the union can be nearer than the parts, the history stays sorted
+            last = Math.max(last, dist);
+            int ca = clusterId[a];
+            int cb = clusterId[b];
+            // as in the clustering loop, the first cluster is the latest merged one, or the first word
+            boolean aFirst = ca >= n || cb >= n ? ca > cb : ca < cb;
+            recorder.record(new MergeHistoryRecord(aFirst ? ca : cb, aFirst ? cb : ca, nextId, last,
+                    n - (nextId - n) - 1));
+            if (size[a] < size[b]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            parent[b] = a;
+            next[tail[a]] = b;
+            tail[a] = tail[b];
+            size[a] += size[b];
+            clusterId[a] = nextId;
+            nextId++;
+        }
+        System.out.println("Merges after reconciling the windows: " + (nextId - n));
+    }
+
+    /**
+     * Distance in {@code linkage} between the clusters of the roots {@code a} and {@code b}. In complete linkage the
+     * scan stops as soon as it exceeds {@code maxDistance}.
+     * */
+    private static float distance(DistanceMeasure d, Lexicon lexicon, Linkage linkage, int[] next,
+                                  int a, int sizeA, int b, int sizeB, float maxDistance) {
+        float result = linkage == Linkage.SINGLE ? Float.POSITIVE_INFINITY : 0;
+        double sum = 0;
+        for (int i = 0, w1 = a; i < sizeA; i++, w1 = next[w1]) {
+            for (int j = 0, w2 = b; j < sizeB; j++, w2 = next[w2]) {
+                float dist = d.calculate(lexicon, w1, w2);
+                if (linkage == Linkage.COMPLETE) {
+                    if (dist > result) {
+                        result = dist;
+                        if (result > maxDistance) {
+                            return result;
+                        }
+                    }
+                } else if (linkage == Linkage.SINGLE) {
+                    result = Math.min(result, dist);
+                } else {
+                    sum += dist;
+                }
+            }
+        }
+        return linkage == Linkage.AVERAGE ? (float) (sum / ((double) sizeA * sizeB)) : result;
+    }
+
+    private static int find(int[] parent, int w) {
+        while (parent[w] != w) {
+            parent[w] = parent[parent[w]];
+            w = parent[w];
+        }
+        return w;
+    }
+
+    /**
+     * A proposal of a window to join the clusters of two words at a distance. {@code order} is the first word of the
+     * window, which keeps the order of the proposals at the same distance fixed.
+     * */
+    private static class Proposal implements Comparable<Proposal> {
+        private int w1;
+        private int w2;
+        private float dist;
+        private int order;
+
+        Proposal(int w1, int w2, float dist, int order) {
+            this.w1 = w1;
+            this.w2 = w2;
+            this.dist = dist;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Proposal o) {
+            if (dist != o.dist) {
+                return dist < o.dist ? -1 : 1;
+            }
+            if (order != o.order) {
+                return order < o.order ? -1 : 1;
+            }
+            if (w1 != o.w1) {
+                return w1 < o.w1 ? -1 : 1;
+            }
+            return w2 < o.w2 ? -1 : (w2 == o.w2 ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package stemmer.clustering;
+
+import stemmer.yass.DistanceManager;
+import stemmer.yass.DistanceMeasure;
+import stemmer.yass.Lexicon;
+import stemmer.yass.PrefixDistanceMeasure;
+
+/**
+ * Distance between two words of the lexicon, identified by their index.
+ * */
+abstract class WordDistance {
+
+    /**
+     * Creates the distance on {@code words} for the measure {@code d}. The measures that depend only on the
+     * first mismatch are answered by an {@link LcpIndex}, the other ones compare the two words.
+     * The measure is first tabulated up to the longest word of the lexicon.
+     * */
+    static WordDistance create(final Lexicon words, DistanceMeasure measure) {
+        final DistanceMeasure d = DistanceManager.tabulate(measure, words.maxLength());
+        if (d instanceof PrefixDistanceMeasure) {
+            return new LcpIndex(words, (PrefixDistanceMeasure) d);
+        }
+        return new WordDistance() {
+            @Override
+            float get(int w1, int w2) {
+                return d.calculate(words, w1, w2);
+            }
+            @Override
+            void row(int w, int from, int to, float[] distances) {
+                d.calculate(words, w, from, to, distances);
+            }
+        };
+    }
+
+    abstract float get(int w1, int w2);
+
+    /**
+     * Distances of the word {@code w} from the words {@code from} to {@code to} (excluded), in
+     * {@code distances[j - from]}.
+     * */
+    void row(int w, int from, int to, float[] distances) {
+        for (int j = from; j < to; j++) {
+            distances[j - from] = get(w, j);
+        }
+    }
+
+    /**
+     * All the values that {@link #get(int, int)} can return, sorted in ascending order and without duplicates,
+     * or null if they are not known in advance.
+     * */
+    float[] values() {
+        return null;
+    }
+}
@@ -7,6 +7,18 @@ public class DistanceManager {
 
     private static float INFINITY = Float.POSITIVE_INFINITY;
 
+    // INV_POW[i] = 1 / 2^i, the same double as 1 / Math.pow(2, i)
+    private static final double[] INV_POW = new double[64];
+    static {
+        for (int i = 0; i < INV_POW.length; i++) {
+            INV_POW[i] = 1 / Math.pow(2, i);
+        }
+    }
+
+    private static double invPow(int i) {
+        return i < INV_POW.length ? INV_POW[i] : 1 / Math.pow(2, i);
+    }
+
     private static int p(String x, String y, int i){
         int minLen = Math.min(x.length(), y.length());
         if (i >= minLen){
@@ -18,6 +30,17 @@ public class DistanceManager {
         return 1;
     }
 
+    private static int p(Lexicon lexicon, int x, int y, int i){
+        int minLen = Math.min(lexicon.length(x), lexicon.length(y));
+        if (i >= minLen){
+            return 1;
+        }
+        if (lexicon.charAt(x, i) == lexicon.charAt(y, i)) {
+            return 0;
+        }
+        return 1;
+    }
+
     private static int firstMismatch(String x, String y){
         int minLen = Math.min(x.length(), y.length());
         for (int i = 0; i < minLen; i++) {
@@ -35,28 +58,141 @@ public class DistanceManager {
                 int maxLen = Math.max(w1.length(), w2.length());
                 float d = 0;
                 for (int i = 0; i < maxLen; i++) {
-                    d += p(w1,w2,i) / Math.pow(2, i);
+                    // adding 0 leaves d as it is
+                    if (p(w1,w2,i) == 1) {
+                        d += invPow(i);
+                    }
+                }
+                return d;
+            }
+            @Override
+            public float calculate(Lexicon lexicon, int w1, int w2) {
+                int maxLen = Math.max(lexicon.length(w1), lexicon.length(w2));
+                float d = 0;
+                for (int i = 0; i < maxLen; i++) {
+                    if (p(lexicon,w1,w2,i) == 1) {
+                        d += invPow(i);
+                    }
                 }
                 return d;
             }
             @Override
+            public void calculate(Lexicon lexicon, int w, int from, int to, float[] distances) {
+                for (int j = from; j < to; j++) {
+                    distances[j - from] = calculate(lexicon, w, j);
+                }
+            }
+            @Override
             public String getName() {
                 return "d1";
             }
         };
     }
 
+    /**
+     * Distance that depends only on the first mismatch and on the length of the longer word.
+     * */
+    private static abstract class MismatchDistance implements PrefixDistanceMeasure {
+
+        abstract float calculate(int m, int maxLen);
+
+        @Override
+        public float calculate(String w1, String w2) {
+            return calculate(firstMismatch(w1,w2), w1.length(), w2.length());
+        }
+        @Override
+        public float calculate(Lexicon lexicon, int w1, int w2) {
+            return calculate(lexicon.firstMismatch(w1,w2), lexicon.length(w1), lexicon.length(w2));
+        }
+        @Override
+        public void calculate(Lexicon lexicon, int w, int from, int to, float[] distances) {
+            int length = lexicon.length(w);
+            for (int j = from; j < to; j++) {
+                distances[j - from] = calculate(lexicon.firstMismatch(w, j), Math.max(length, lexicon.length(j)));
+            }
+        }
+        @Override
+        public float calculate(int m, int length1, int length2) {
+            return calculate(m, Math.max(length1, length2));
+        }
+    }
+
+    /**
+     * A {@link MismatchDistance} with its values for the words up to {@code maxLength} characters
+     * taken from a table filled at the creation, so a distance is a mismatch scan and one array load.
+     * */
+    private static class TabulatedDistance implements PrefixDistanceMeasure {
+
+        // the table grows with the square of the length, and the longer words are rare
+        private static final int MAX_TABULATED_LENGTH = 64;
+
+        private MismatchDistance d;
+        private int maxLength;
+        // table[m*(maxLength+1) + maxLen]
+        private float[] table;
+
+        TabulatedDistance(MismatchDistance d, int maxLength) {
+            this.d = d;
+            maxLength = Math.min(maxLength, MAX_TABULATED_LENGTH);
+            this.maxLength = maxLength;
+            this.table = new float[(maxLength+1) * (maxLength+1)];
+            for (int maxLen = 0; maxLen <= maxLength; maxLen++) {
+                for (int m = 0; m <= maxLen; m++) {
+                    table[m*(maxLength+1) + maxLen] = d.calculate(m, maxLen);
+                }
+            }
+        }
+
+        @Override
+        public float calculate(String w1, String w2) {
+            return calculate(firstMismatch(w1,w2), w1.length(), w2.length());
+        }
+        @Override
+        public float calculate(Lexicon lexicon, int w1, int w2) {
+            return calculate(lexicon.firstMismatch(w1,w2), lexicon.length(w1), lexicon.length(w2));
+        }
+        @Override
+        public void calculate(Lexicon lexicon, int w, int from, int to, float[] distances) {
+            int length = lexicon.length(w);
+            for (int j = from; j < to; j++) {
+                distances[j - from] = calculate(lexicon.firstMismatch(w, j), length, lexicon.length(j));
+            }
+        }
+        @Override
+        public float calculate(int m, int length1, int length2) {
+            int maxLen = Math.max(length1, length2);
+            if (maxLen > maxLength) {
+                return d.calculate(m, maxLen);
+            }
+            return table[m*(maxLength+1) + maxLen];
+        }
+        @Override
+        public String getName() {
+            return d.getName();
+        }
+    }
+
+    /**
+     * The measure {@code d} with its values precomputed for the words up to {@code maxLength} characters, but at
+     * most 64, when it depends only on the first mismatch and on the lengths (d2, d3 and d4). The values are the
+     * same, longer words are calculated as usual. The other measures are returned as they are.
+     * */
+    public static DistanceMeasure tabulate(DistanceMeasure d, int maxLength) {
+        if (d instanceof MismatchDistance) {
+            return new TabulatedDistance((MismatchDistance) d, maxLength);
+        }
+        return d;
+    }
+
     public static DistanceMeasure d2(){
-        return new DistanceMeasure() {
+        return new MismatchDistance() {
             @Override
-            public float calculate(String w1, String w2) {
-                int maxLen = Math.max(w1.length(), w2.length());
+            float calculate(int m, int maxLen) {
                 float d = 0;
-                int m = firstMismatch(w1,w2);
 
                 if (m == 0){ return INFINITY;}
                 for (int i = m; i < maxLen; i++) {
-                    d += 1 / Math.pow(2,i-m);
+                    d += invPow(i-m);
                 }
 
                 return d / (float)m;
@@ -69,17 +205,15 @@ public class DistanceManager {
     }
 
     public static DistanceMeasure d3(){
-        return new DistanceMeasure() {
+        return new MismatchDistance() {
             @Override
-            public float calculate(String w1, String w2) {
-                int maxLen = Math.max(w1.length(), w2.length());
+            float calculate(int m, int maxLen) {
                 float d = 0;
                 int n = maxLen -1;
-                int m = firstMismatch(w1,w2);
 
                 if (m == 0){ return INFINITY;}
                 for (int i = m; i < maxLen; i++) {
-                    d += 1 / Math.pow(2,i-m);
+                    d += invPow(i-m);
                 }
 
                 return (d * (n-m+1)) / (float)m;
@@ -92,17 +226,15 @@ public class DistanceManager {
     }
 
     public static DistanceMeasure d4(){
-        return new DistanceMeasure() {
+        return new MismatchDistance() {
             @Override
-            public float calculate(String w1, String w2) {
-                int maxLen = Math.max(w1.length(), w2.length());
+            float calculate(int m, int maxLen) {
                 float d = 0;
-                int m = firstMismatch(w1,w2);
                 int n = maxLen - 1;
 
                 if (m == 0){ return INFINITY;}
                 for (int i = m; i < maxLen; i++) {
-                    d += 1 / Math.pow(2,i-m);
+                    d += invPow(i-m);
                 }
 
                 return (d * (n-m+1)) / (float)(n+1);
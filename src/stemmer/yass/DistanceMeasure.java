@@ -5,5 +5,17 @@ package stemmer.yass;
  * */
 public interface DistanceMeasure {
     float calculate(String w1, String w2);
+
+    /**
+     * Same as {@link #calculate(String, String)} for the words {@code w1} and {@code w2} of {@code lexicon}.
+     * */
+    float calculate(Lexicon lexicon, int w1, int w2);
+
+    /**
+     * Distances of the word {@code w} of {@code lexicon} from the words {@code from} to {@code to} (excluded):
+     * {@code distances[j - from]} is the distance from the word {@code j}.
+     * */
+    void calculate(Lexicon lexicon, int w, int from, int to, float[] distances);
+
     String getName();
 }
@@ -1,10 +1,15 @@
 package stemmer.yass;
 
+import stemmer.clustering.ClusteringEngine;
+import stemmer.clustering.DistanceMatrixStorage;
+import stemmer.clustering.Linkage;
+
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
 /**
@@ -24,6 +29,12 @@ public class Experiment{
     private static final String P_STOPWORDS_PATH = "experiment.stopwords";
     private static final String P_ALLOW_SPLIT = "experiment.allow_split";
     private static final String P_TERRIER_LEXICON = "experiment.terrier_lexicon";
+    private static final String P_PARTITION_LEXICON = "experiment.partition_lexicon";
+    private static final String P_CLUSTERING_ENGINE = "experiment.clustering_engine";
+    private static final String P_DISTANCE_MATRIX = "experiment.distance_matrix";
+    private static final String P_LINKAGE = "experiment.linkage";
+    private static final String P_WINDOW = "experiment.window";
+    private static final String P_WINDOW_SAMPLE = "experiment.window_sample";
 
     public static Experiment loadFromFile(String filePath){
         Experiment e = new Experiment();
@@ -45,6 +56,12 @@ public class Experiment{
             e.discardNumbers = Boolean.parseBoolean(prop.getProperty(P_DISCARD_NUMBERS));
             e.allowSplit = Boolean.parseBoolean(prop.getProperty(P_ALLOW_SPLIT));
             e.terrierLexicon = Boolean.parseBoolean(prop.getProperty(P_TERRIER_LEXICON));
+            e.partitionLexicon = Boolean.parseBoolean(prop.getProperty(P_PARTITION_LEXICON));
+            e.clusteringEngine = ClusteringEngine.valueOf(prop.getProperty(P_CLUSTERING_ENGINE, "dense").trim().toUpperCase(Locale.ROOT));
+            e.distanceMatrixStorage = DistanceMatrixStorage.valueOf(prop.getProperty(P_DISTANCE_MATRIX, "heap").trim().toUpperCase(Locale.ROOT));
+            e.linkage = Linkage.valueOf(prop.getProperty(P_LINKAGE, "complete").trim().toUpperCase(Locale.ROOT));
+            e.window = Integer.parseInt(prop.getProperty(P_WINDOW, "0").trim());
+            e.windowSample = Integer.parseInt(prop.getProperty(P_WINDOW_SAMPLE, String.valueOf(4 * e.window)).trim());
 
             String distanceName = prop.getProperty(P_DISTANCE);
             Method distanceCreator = DistanceManager.class.getMethod(distanceName);
@@ -93,6 +110,12 @@ public class Experiment{
     private String stopwordsPath;
     private boolean allowSplit;
     private boolean terrierLexicon;
+    private boolean partitionLexicon;
+    private ClusteringEngine clusteringEngine;
+    private DistanceMatrixStorage distanceMatrixStorage;
+    private Linkage linkage;
+    private int window;
+    private int windowSample;
 
 
     public String getName() {
@@ -138,4 +161,38 @@ public class Experiment{
     public boolean isTerrierLexicon() {
         return terrierLexicon;
     }
+
+    /**
+     * Whether the lexicon is clustered separately for every initial character.
+     * */
+    public boolean isLexiconPartitioned() {
+        return partitionLexicon;
+    }
+
+    public ClusteringEngine getClusteringEngine() {
+        return clusteringEngine;
+    }
+
+    public DistanceMatrixStorage getDistanceMatrixStorage() {
+        return distanceMatrixStorage;
+    }
+
+    public Linkage getLinkage() {
+        return linkage;
+    }
+
+    /**
+     * Number of consecutive words of the sorted lexicon clustered together by the approximate windowed clustering,
+     * 0 for the exact clustering.
+     * */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Number of words on which the windowed clustering is compared with the exact one, 0 for no comparison.
+     * */
+    public int getWindowSample() {
+        return windowSample;
+    }
 }
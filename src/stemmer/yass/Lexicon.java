@@ -0,0 +1,138 @@
+package stemmer.yass;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Lexicon packed in a single char array, with the offset of every word in an int array.
+ * <p>
+ * Words are identified by their index and read through {@link #length(int)} and {@link #charAt(int, int)},
+ * so the lexicon costs two arrays instead of a String object per word. As a {@link List} it is read-only,
+ * and {@link #get(int)} creates the String of the word only when it is asked for.
+ * */
+public class Lexicon extends AbstractList<String> implements RandomAccess {
+
+    /**
+     * The lexicon {@code words}, packed if it is not already.
+     * */
+    public static Lexicon of(List<String> words) {
+        if (words instanceof Lexicon) {
+            return (Lexicon) words;
+        }
+        return new Lexicon(words);
+    }
+
+    private char[] chars;
+    // offsets[w] is the start of the word w, offsets[size()] the end of the last word
+    private int[] offsets;
+
+    public Lexicon(List<String> words) {
+        int n = words.size();
+        offsets = new int[n + 1];
+        long total = 0;
+        for (int w = 0; w < n; w++) {
+            total += words.get(w).length();
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The lexicon has too many characters: " + total);
+        }
+        chars = new char[(int) total];
+        int offset = 0;
+        for (int w = 0; w < n; w++) {
+            String word = words.get(w);
+            word.getChars(0, word.length(), chars, offset);
+            offsets[w] = offset;
+            offset += word.length();
+        }
+        offsets[n] = offset;
+    }
+
+    private Lexicon(char[] chars, int[] offsets) {
+        this.chars = chars;
+        this.offsets = offsets;
+    }
+
+    /**
+     * The lexicon of the words {@code ids} of this one, in that order.
+     * */
+    public Lexicon select(int[] ids) {
+        int total = 0;
+        for (int w : ids) {
+            total += length(w);
+        }
+        char[] newChars = new char[total];
+        int[] newOffsets = new int[ids.length + 1];
+        int offset = 0;
+        for (int i = 0; i < ids.length; i++) {
+            System.arraycopy(chars, offsets[ids[i]], newChars, offset, length(ids[i]));
+            newOffsets[i] = offset;
+            offset += length(ids[i]);
+        }
+        newOffsets[ids.length] = offset;
+        return new Lexicon(newChars, newOffsets);
+    }
+
+    public int length(int w) {
+        return offsets[w + 1] - offsets[w];
+    }
+
+    public char charAt(int w, int i) {
+        return chars[offsets[w] + i];
+    }
+
+    /**
+     * Length of the longest word, 0 if the lexicon is empty.
+     * */
+    public int maxLength() {
+        int maxLength = 0;
+        for (int w = 0; w < size(); w++) {
+            maxLength = Math.max(maxLength, length(w));
+        }
+        return maxLength;
+    }
+
+    /**
+     * Position of the first mismatch between the words {@code w1} and {@code w2},
+     * the length of the shorter one if it is a prefix of the other.
+     * */
+    public int firstMismatch(int w1, int w2) {
+        int o1 = offsets[w1];
+        int o2 = offsets[w2];
+        int minLen = Math.min(length(w1), length(w2));
+        for (int i = 0; i < minLen; i++) {
+            if (chars[o1 + i] != chars[o2 + i]) {
+                return i;
+            }
+        }
+        return minLen;
+    }
+
+    /**
+     * Compares the words {@code w1} and {@code w2} as {@link String#compareTo(String)} does.
+     * */
+    public int compare(int w1, int w2) {
+        int m = firstMismatch(w1, w2);
+        if (m < length(w1) && m < length(w2)) {
+            return charAt(w1, m) - charAt(w2, m);
+        }
+        return length(w1) - length(w2);
+    }
+
+    /**
+     * The first {@code length} characters of the word {@code w}.
+     * */
+    public String prefix(int w, int length) {
+        return new String(chars, offsets[w], length);
+    }
+
+    @Override
+    public String get(int w) {
+        return new String(chars, offsets[w], length(w));
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+}
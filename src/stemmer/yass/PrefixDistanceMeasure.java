@@ -0,0 +1,8 @@
+package stemmer.yass;
+
+/**
+ * Distance that depends only on the position of the first mismatch between the two words and on their lengths.
+ * */
+public interface PrefixDistanceMeasure extends DistanceMeasure {
+    float calculate(int firstMismatch, int length1, int length2);
+}
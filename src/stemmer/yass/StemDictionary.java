@@ -0,0 +1,560 @@
+package stemmer.yass;
+
+import stemmer.CharStemmer;
+import stemmer.clustering.Cluster;
+import stemmer.clustering.ClusterSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable dictionary of YASS stems, in one buffer and with no object per word.
+ * <p>
+ * The words are placed by a minimal perfect hash (hash and displace): the words are hashed into buckets of a few
+ * words, and every bucket has the displacement that sends all of its words to free slots, with no collision, in
+ * [0, n). A lookup hashes the UTF-8 bytes of the word, reads the displacement of its bucket and compares the word
+ * with the only one that can be in its slot.
+ * <p>
+ * Every slot has the index of the stem in a table of the distinct stems, so the stem of a cluster is stored once.
+ * The YASS stems are prefixes of their words, so of a word only the bytes after its stem are stored; the words
+ * that do not start with their stem are stored whole, marked by the sign bit of the index of the stem.
+ * <p>
+ * The layout of the buffer, in ints from the start:
+ * <pre>
+ * MAGIC VERSION seed(2 ints) words buckets stems suffixBytes stemBytes
+ * displacement[buckets] suffixStart[words+1] stemOf[words] stemStart[stems+1]
+ * suffix bytes, stem bytes (UTF-8)
+ * </pre>
+ * The suffixes are stored in the order of the slots of their words. The lookups allocate nothing besides the
+ * returned String. The words with an unpaired surrogate have no UTF-8 form, so they are left out and never found.
+ * <p>
+ * A file written by {@link #write(Path)} is the buffer as it is, big-endian. {@link #open(Path)} maps it and reads
+ * only the header, so opening takes the same time for any size, and the processes that open the same file share
+ * its pages in the page cache. A change of the layout must change {@link #VERSION}.
+ * */
+public class StemDictionary implements CharStemmer {
+
+    static final int MAGIC = 0x59535344; // "YSSD"
+    static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 9;
+    // words per bucket on average: more means less displacements and a longer search for them
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_SEEDS = 16;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final long FNV_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[256];
+        }
+    };
+
+    /**
+     * Dictionary of the words of {@code clusters}, every one stemmed to the central word of its cluster as in
+     * {@link YASS#stemFromClusterSet(ClusterSet)}.
+     * */
+    public static StemDictionary of(ClusterSet clusters) {
+        List<String> words = new ArrayList<>();
+        List<String> stems = new ArrayList<>();
+        for (Integer clusterId : clusters.getClustersId()) {
+            Cluster cluster = clusters.getCluster(clusterId);
+            String centralWord = cluster.getCentralWord();
+            for (String w : cluster.getWords()) {
+                words.add(w);
+                stems.add(centralWord);
+            }
+        }
+        return build(words, stems);
+    }
+
+    /**
+     * Dictionary of {@code stemmedDict}, as made by {@link YASS#stemFromLabels(List, int[])}.
+     * */
+    public static StemDictionary of(Map<String, String> stemmedDict) {
+        List<String> words = new ArrayList<>(stemmedDict.size());
+        List<String> stems = new ArrayList<>(stemmedDict.size());
+        for (Map.Entry<String, String> e : stemmedDict.entrySet()) {
+            words.add(e.getKey());
+            stems.add(e.getValue());
+        }
+        return build(words, stems);
+    }
+
+    /**
+     * Dictionary on a buffer with the layout of {@link #buffer()}. The buffer is not copied, and only its header is
+     * read.
+     * */
+    public static StemDictionary wrap(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a stem dictionary");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Stem dictionary of version " + buffer.getInt(4)
+                    + ", expected " + VERSION);
+        }
+        StemDictionary dictionary = new StemDictionary(buffer);
+        if (dictionary.stemBytes + buffer.getInt(32) != buffer.limit()) {
+            throw new IllegalArgumentException("Stem dictionary of " + buffer.limit() + " bytes, expected "
+                    + (dictionary.stemBytes + buffer.getInt(32)));
+        }
+        return dictionary;
+    }
+
+    /**
+     * Maps the dictionary written by {@link #write(Path)} in {@code path}. The file is read by the lookups, through
+     * the page cache; it must not change while it is open.
+     * */
+    public static StemDictionary open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the buffer of the dictionary in {@code path}, which can be opened by {@link #open(Path)}.
+     * */
+    public void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer view = buffer();
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+    }
+
+    private ByteBuffer buffer;
+    private long seed;
+    private int n;
+    private int buckets;
+    private int stems;
+    // byte positions of the sections
+    private int displacements;
+    private int suffixStart;
+    private int stemOf;
+    private int stemStart;
+    private int suffixBytes;
+    private int stemBytes;
+
+    private StemDictionary(ByteBuffer buffer) {
+        this.buffer = buffer;
+        seed = ((long) buffer.getInt(8) << 32) | (buffer.getInt(12) & 0xFFFFFFFFL);
+        n = buffer.getInt(16);
+        buckets = buffer.getInt(20);
+        stems = buffer.getInt(24);
+        int suffixBytesLength = buffer.getInt(28);
+        displacements = 4 * HEADER_INTS;
+        suffixStart = displacements + 4 * buckets;
+        stemOf = suffixStart + 4 * (n + 1);
+        stemStart = stemOf + 4 * n;
+        suffixBytes = stemStart + 4 * (stems + 1);
+        stemBytes = suffixBytes + suffixBytesLength;
+    }
+
+    private static StemDictionary build(List<String> allWords, List<String> allStems) {
+        // a repeated word keeps the last stem as in a HashMap, the words with no UTF-8 form are left out
+        Map<String, Integer> last = new LinkedHashMap<>();
+        for (int i = 0; i < allWords.size(); i++) {
+            String word = allWords.get(i);
+            if (encode(word, null, 0, word.length()) >= 0) {
+                last.put(word, i);
+            }
+        }
+        int n = last.size();
+        byte[][] keys = new byte[n][];
+        List<String> stemOfWord = new ArrayList<>(n);
+        int k = 0;
+        for (int i : last.values()) {
+            keys[k++] = allWords.get(i).getBytes(StandardCharsets.UTF_8);
+            stemOfWord.add(allStems.get(i));
+        }
+        // the distinct stems
+        Map<String, Integer> stemIds = new HashMap<>();
+        List<byte[]> stemList = new ArrayList<>();
+        int[] stemIdOfWord = new int[n];
+        for (int i = 0; i < n; i++) {
+            String stem = stemOfWord.get(i);
+            Integer id = stemIds.get(stem);
+            if (id == null) {
+                id = stemList.size();
+                stemIds.put(stem, id);
+                stemList.add(stem.getBytes(StandardCharsets.UTF_8));
+            }
+            stemIdOfWord[i] = id;
+        }
+        // bytes of every word after its stem, or the whole word
+        int[] suffixFrom = new int[n];
+        for (int i = 0; i < n; i++) {
+            byte[] stem = stemList.get(stemIdOfWord[i]);
+            if (startsWith(keys[i], stem)) {
+                suffixFrom[i] = stem.length;
+            } else {
+                stemIdOfWord[i] |= Integer.MIN_VALUE;
+            }
+        }
+
+        int buckets = Math.max(1, n / BUCKET_SIZE);
+        int[] displacement = new int[buckets];
+        int[] wordOfSlot = new int[n];
+        long seed = 0;
+        while (!place(keys, seed, displacement, wordOfSlot)) {
+            // two distinct words with the same 64 bit hash: very unlikely for a seed, and never for many
+            if (++seed == MAX_SEEDS) {
+                throw new IllegalStateException("No perfect hash found in " + MAX_SEEDS + " seeds");
+            }
+        }
+
+        int suffixBytesLength = 0;
+        for (int i = 0; i < n; i++) {
+            suffixBytesLength += keys[i].length - suffixFrom[i];
+        }
+        int stemBytesLength = 0;
+        for (byte[] s : stemList) {
+            stemBytesLength += s.length;
+        }
+        int stems = stemList.size();
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (HEADER_INTS + buckets + (n + 1) + n + (stems + 1))
+                + suffixBytesLength + stemBytesLength);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt((int) (seed >>> 32)).putInt((int) seed)
+                .putInt(n).putInt(buckets).putInt(stems).putInt(suffixBytesLength).putInt(stemBytesLength);
+        for (int d : displacement) {
+            buffer.putInt(d);
+        }
+        int position = 0;
+        for (int slot = 0; slot < n; slot++) {
+            buffer.putInt(position);
+            int w = wordOfSlot[slot];
+            position += keys[w].length - suffixFrom[w];
+        }
+        buffer.putInt(position);
+        for (int slot = 0; slot < n; slot++) {
+            buffer.putInt(stemIdOfWord[wordOfSlot[slot]]);
+        }
+        position = 0;
+        for (byte[] s : stemList) {
+            buffer.putInt(position);
+            position += s.length;
+        }
+        buffer.putInt(position);
+        for (int slot = 0; slot < n; slot++) {
+            int w = wordOfSlot[slot];
+            buffer.put(keys[w], suffixFrom[w], keys[w].length - suffixFrom[w]);
+        }
+        for (byte[] s : stemList) {
+            buffer.put(s);
+        }
+        buffer.flip();
+        return new StemDictionary(buffer);
+    }
+
+    private static boolean startsWith(byte[] word, byte[] prefix) {
+        if (prefix.length > word.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (word[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the displacement of every bucket, the largest buckets first, and the word of every slot. Fails if two
+     * words of a bucket have the same hash.
+     * */
+    private static boolean place(byte[][] keys, long seed, int[] displacement, int[] wordOfSlot) {
+        int n = keys.length;
+        int buckets = displacement.length;
+        long[] hashes = new long[n];
+        int[] bucketOf = new int[n];
+        final int[] bucketSize = new int[buckets];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(keys[i], keys[i].length, seed);
+            bucketOf[i] = reduce(hashes[i], buckets);
+            bucketSize[bucketOf[i]]++;
+        }
+        // the words of every bucket, by counting sort
+        int[] bucketStart = new int[buckets + 1];
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] = bucketStart[b] + bucketSize[b];
+        }
+        int[] bucketWords = new int[n];
+        int[] fill = Arrays.copyOf(bucketStart, buckets);
+        for (int i = 0; i < n; i++) {
+            bucketWords[fill[bucketOf[i]]++] = i;
+        }
+        Integer[] order = new Integer[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(bucketSize[b], bucketSize[a]);
+            }
+        });
+
+        Arrays.fill(wordOfSlot, -1);
+        int[] slots = new int[BUCKET_SIZE * 8];
+        for (int b : order) {
+            int size = bucketSize[b];
+            if (size == 0) {
+                break;
+            }
+            if (slots.length < size) {
+                slots = new int[size];
+            }
+            int start = bucketStart[b];
+            for (int d = 0; ; d++) {
+                if (d < 0) {
+                    return false;
+                }
+                boolean free = true;
+                for (int j = 0; j < size && free; j++) {
+                    long h = hashes[bucketWords[start + j]];
+                    int slot = slot(h, d, n);
+                    if (wordOfSlot[slot] != -1) {
+                        free = false;
+                    }
+                    for (int k = 0; k < j && free; k++) {
+                        if (slots[k] == slot) {
+                            if (h == hashes[bucketWords[start + k]]) {
+                                return false;
+                            }
+                            free = false;
+                        }
+                    }
+                    slots[j] = slot;
+                }
+                if (free) {
+                    for (int j = 0; j < size; j++) {
+                        wordOfSlot[slots[j]] = bucketWords[start + j];
+                    }
+                    displacement[b] = d;
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a over the first {@code length} bytes, finished by the mix of MurmurHash3.
+     * */
+    private static long hash(byte[] key, int length, long seed) {
+        long h = FNV_BASIS ^ seed;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (key[i] & 0xFF)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Maps the high bits of {@code hash} to [0, range) by a multiplication, with no division.
+     * */
+    private static int reduce(long hash, int range) {
+        return (int) (((hash >>> 32) * range) >>> 32);
+    }
+
+    private static int slot(long hash, int displacement, int n) {
+        return reduce(mix(hash + displacement * GOLDEN), n);
+    }
+
+    /**
+     * Encodes {@code word} in UTF-8 as {@link String#getBytes} does, in the scratch array of the thread, and
+     * returns the number of bytes, or -1 if the word has an unpaired surrogate. The array is {@code SCRATCH.get()}
+     * after the call.
+     * */
+    private static int encode(CharSequence chars, char[] array, int offset, int length) {
+        byte[] bytes = SCRATCH.get();
+        if (bytes.length < 4 * length) {
+            bytes = new byte[4 * length];
+            SCRATCH.set(bytes);
+        }
+        int p = 0;
+        for (int i = 0; i < length; i++) {
+            char c = array != null ? array[offset + i] : chars.charAt(offset + i);
+            if (c < 0x80) {
+                bytes[p++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[p++] = (byte) (0xC0 | (c >> 6));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                bytes[p++] = (byte) (0xE0 | (c >> 12));
+                bytes[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                char low = i + 1 < length ? (array != null ? array[offset + i + 1] : chars.charAt(offset + i + 1)) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    bytes[p++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[p++] = (byte) (0x80 | (codePoint & 0x3F));
+                    i++;
+                } else {
+                    // unpaired surrogate: the encoder would replace it with '?', and "ab?" would be found
+                    return -1;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Slot of the word {@code chars[offset, offset+length)}, or of {@code array[offset, offset+length)} when it is
+     * not null, -1 if it is not in the dictionary.
+     * */
+    private int find(CharSequence chars, char[] array, int offset, int length) {
+        if (n == 0) {
+            return -1;
+        }
+        int byteLength = encode(chars, array, offset, length);
+        if (byteLength < 0) {
+            return -1;
+        }
+        byte[] bytes = SCRATCH.get();
+        long h = hash(bytes, byteLength, seed);
+        int slot = slot(h, buffer.getInt(displacements + 4 * reduce(h, buckets)), n);
+
+        // the word of the slot is the only one with this hash: the bytes must be equal
+        int suffix = buffer.getInt(suffixStart + 4 * slot);
+        int suffixLength = buffer.getInt(suffixStart + 4 * (slot + 1)) - suffix;
+        int stem = buffer.getInt(stemOf + 4 * slot);
+        int p = 0;
+        if (stem >= 0) {
+            int start = buffer.getInt(stemStart + 4 * stem);
+            int stemLength = buffer.getInt(stemStart + 4 * (stem + 1)) - start;
+            if (stemLength + suffixLength != byteLength) {
+                return -1;
+            }
+            for (int i = 0; i < stemLength; i++) {
+                if (buffer.get(stemBytes + start + i) != bytes[p++]) {
+                    return -1;
+                }
+            }
+        } else if (suffixLength != byteLength) {
+            return -1;
+        }
+        for (int i = 0; i < suffixLength; i++) {
+            if (buffer.get(suffixBytes + suffix + i) != bytes[p++]) {
+                return -1;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Whether {@code word} is in the dictionary.
+     * */
+    public boolean contains(CharSequence word) {
+        return find(word, null, 0, word.length()) >= 0;
+    }
+
+    /**
+     * The stem of {@code word}, null if it is not in the dictionary.
+     * */
+    public String get(CharSequence word) {
+        int slot = find(word, null, 0, word.length());
+        if (slot < 0) {
+            return null;
+        }
+        int stem = buffer.getInt(stemOf + 4 * slot) & Integer.MAX_VALUE;
+        int start = buffer.getInt(stemStart + 4 * stem);
+        int length = buffer.getInt(stemStart + 4 * (stem + 1)) - start;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(stemBytes + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stems the word in place with no allocation, as {@link CharStemmer}. The words out of the dictionary are kept.
+     * */
+    @Override
+    public int stem(char[] chars, int offset, int length) {
+        int slot = find(null, chars, offset, length);
+        if (slot < 0) {
+            return length;
+        }
+        int stem = buffer.getInt(stemOf + 4 * slot) & Integer.MAX_VALUE;
+        int start = stemBytes + buffer.getInt(stemStart + 4 * stem);
+        int end = stemBytes + buffer.getInt(stemStart + 4 * (stem + 1));
+        // count the chars first, to check that the stem fits
+        int stemLength = 0;
+        for (int p = start; p < end; ) {
+            int b = buffer.get(p) & 0xFF;
+            int bytes = b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+            stemLength += bytes == 4 ? 2 : 1;
+            p += bytes;
+        }
+        if (stemLength > chars.length - offset) {
+            return length;
+        }
+        int i = offset;
+        for (int p = start; p < end; ) {
+            int b = buffer.get(p) & 0xFF;
+            if (b < 0x80) {
+                chars[i++] = (char) b;
+                p++;
+            } else if (b < 0xE0) {
+                chars[i++] = (char) (((b & 0x1F) << 6) | (buffer.get(p + 1) & 0x3F));
+                p += 2;
+            } else if (b < 0xF0) {
+                chars[i++] = (char) (((b & 0x0F) << 12) | ((buffer.get(p + 1) & 0x3F) << 6)
+                        | (buffer.get(p + 2) & 0x3F));
+                p += 3;
+            } else {
+                int codePoint = ((b & 0x07) << 18) | ((buffer.get(p + 1) & 0x3F) << 12)
+                        | ((buffer.get(p + 2) & 0x3F) << 6) | (buffer.get(p + 3) & 0x3F);
+                chars[i++] = Character.highSurrogate(codePoint);
+                chars[i++] = Character.lowSurrogate(codePoint);
+                p += 4;
+            }
+        }
+        return stemLength;
+    }
+
+    /**
+     * Number of words.
+     * */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Number of distinct stems.
+     * */
+    public int stems() {
+        return stems;
+    }
+
+    /**
+     * The buffer of the dictionary, from position 0, shared and read-only.
+     * */
+    public ByteBuffer buffer() {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.clear();
+        return view;
+    }
+}
@@ -1,9 +1,11 @@
 package stemmer.yass;
 
+import stemmer.CharStemmer;
 import stemmer.clustering.Cluster;
 import stemmer.clustering.ClusterSet;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -20,4 +22,45 @@ public class YASS {
         }
         return stemmedDict;
     }
+
+    /**
+     * Same as {@link #stemFromClusterSet(ClusterSet)} for clusters given as labels, as passed to a
+     * {@link stemmer.clustering.SnapshotListener}: every word is stemmed to the longest prefix common to the
+     * words with its label.
+     * @param labels label of every word of {@code words}, which must be the index of one of the words with that label.
+     * */
+    public static Map<String, String> stemFromLabels(List<String> words, int[] labels){
+        int n = words.size();
+        // length of the prefix shared by every cluster with its labelling word
+        int[] prefixLength = new int[n];
+        for (int w = 0; w < n; w++) {
+            prefixLength[labels[w]] = words.get(labels[w]).length();
+        }
+        for (int w = 0; w < n; w++) {
+            int label = labels[w];
+            String root = words.get(label);
+            String word = words.get(w);
+            int length = Math.min(prefixLength[label], word.length());
+            int i = 0;
+            while (i < length && root.charAt(i) == word.charAt(i)) {
+                i++;
+            }
+            prefixLength[label] = i;
+        }
+
+        Map<String, String> stemmedDict = new HashMap<>();
+        for (int w = 0; w < n; w++) {
+            stemmedDict.put(words.get(w), words.get(labels[w]).substring(0, prefixLength[labels[w]]));
+        }
+        return stemmedDict;
+    }
+
+    /**
+     * Stemmer of the buffers of a token stream with the dictionary {@code stemmedDict}, as made by
+     * {@link #stemFromClusterSet(ClusterSet)} or {@link #stemFromLabels(List, int[])}, frozen in a
+     * {@link StemDictionary}. It can be shared between threads.
+     * */
+    public static CharStemmer charStemmer(Map<String, String> stemmedDict){
+        return StemDictionary.of(stemmedDict);
+    }
 }